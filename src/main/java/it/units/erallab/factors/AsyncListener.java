@@ -0,0 +1,241 @@
+package it.units.erallab.factors;
+
+import it.units.malelab.jgea.core.evolver.Event;
+import it.units.malelab.jgea.core.listener.Listener;
+import it.units.malelab.jgea.core.listener.NamedFunction;
+import it.units.malelab.jgea.core.order.PartiallyOrderedCollection;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Runs the listeners built by another factory on a background thread: events are snapshotted by the evolution thread,
+ * which only waits when {@code capacity} snapshots are already queued, and consumed in batches by the writer thread.
+ * Event-level functions reading counters are evaluated when snapshotting, through {@link #snapshotter(List)}, and their
+ * values are read by the writer thread through {@link #precomputed(List)}, so that they land on the row of their event.
+ * With a zero capacity, listeners are invoked synchronously. In both cases, the time the evolution thread spent in the
+ * listeners is logged on {@code done()}.
+ */
+public class AsyncListener<E> implements Listener.Factory<E> {
+
+  private static final Logger L = Logger.getLogger(AsyncListener.class.getName());
+
+  // an immutable copy of a population, so that it can be read while the evolver changes the original
+  private static class PopulationSnapshot<T> implements PartiallyOrderedCollection<T> {
+    private final List<T> all;
+    private final List<T> firsts;
+    private final List<T> lasts;
+
+    private PopulationSnapshot(PartiallyOrderedCollection<T> population) {
+      all = Collections.unmodifiableList(new ArrayList<>(population.all()));
+      firsts = Collections.unmodifiableList(new ArrayList<>(population.firsts()));
+      lasts = Collections.unmodifiableList(new ArrayList<>(population.lasts()));
+    }
+
+    @Override
+    public Collection<T> all() {
+      return all;
+    }
+
+    @Override
+    public Collection<T> firsts() {
+      return firsts;
+    }
+
+    @Override
+    public Collection<T> lasts() {
+      return lasts;
+    }
+
+    @Override
+    public void add(T t) {
+      throw new UnsupportedOperationException("Population snapshots cannot be modified");
+    }
+
+    @Override
+    public boolean remove(T t) {
+      throw new UnsupportedOperationException("Population snapshots cannot be modified");
+    }
+  }
+
+  // an event with the values of some functions, computed by the evolution thread when the event was snapshotted
+  private static class Snapshot<G, S, F> extends Event<G, S, F> {
+    private final Map<NamedFunction<?, ?>, Object> values;
+
+    private Snapshot(Event<G, S, F> event, Map<NamedFunction<?, ?>, Object> values) {
+      super(event.getState().copy(), new PopulationSnapshot<>(event.getOrderedPopulation()));
+      this.values = values;
+    }
+  }
+
+  private static final Object DONE = new Object();
+  private static final int BATCH_SIZE = 16;
+
+  private final Listener.Factory<E> factory;
+  private final Function<E, E> snapshotter;
+  private final int capacity;
+
+  public AsyncListener(Listener.Factory<E> factory, Function<E, E> snapshotter, int capacity) {
+    this.factory = factory;
+    this.snapshotter = snapshotter;
+    this.capacity = capacity;
+  }
+
+  private static <G, S, F> Event<G, S, F> snapshot(Event<G, S, F> event, Map<NamedFunction<?, ?>, Object> values) {
+    return new Snapshot<>(event, values);
+  }
+
+  // snapshots events, evaluating the given functions on the original event
+  @SuppressWarnings("unchecked")
+  public static <E extends Event<?, ?, ?>> Function<E, E> snapshotter(List<? extends NamedFunction<? super E, ?>> functions) {
+    return e -> {
+      Map<NamedFunction<?, ?>, Object> values = new IdentityHashMap<>();
+      for (NamedFunction<? super E, ?> function : functions) {
+        values.put(function, function.apply(e));
+      }
+      return (E) snapshot(e, values);
+    };
+  }
+
+  // the given functions, reading the values computed when snapshotting, if any
+  public static <E> List<NamedFunction<E, ?>> precomputed(List<NamedFunction<E, ?>> functions) {
+    List<NamedFunction<E, ?>> precomputed = new ArrayList<>(functions.size());
+    for (NamedFunction<E, ?> function : functions) {
+      precomputed.add(NamedFunction.build(function.getName(), function.getFormat(), e -> {
+        if (e instanceof Snapshot && ((Snapshot<?, ?, ?>) e).values.containsKey(function)) {
+          return ((Snapshot<?, ?, ?>) e).values.get(function);
+        }
+        return function.apply(e);
+      }));
+    }
+    return precomputed;
+  }
+
+  @Override
+  public Listener<E> build() {
+    Listener<E> listener = factory.build();
+    if (capacity <= 0) {
+      return new Listener<>() {
+        private long blockedNanos = 0;
+
+        @Override
+        public void listen(E e) {
+          long start = System.nanoTime();
+          listener.listen(e);
+          blockedNanos = blockedNanos + System.nanoTime() - start;
+        }
+
+        @Override
+        public void done() {
+          long start = System.nanoTime();
+          listener.done();
+          blockedNanos = blockedNanos + System.nanoTime() - start;
+          L.info(String.format("Evolution blocked in listeners for %.1fs", blockedNanos / 1e9));
+        }
+      };
+    }
+    BlockingQueue<Object> queue = new ArrayBlockingQueue<>(capacity);
+    CountDownLatch finished = new CountDownLatch(1);
+    Throwable[] failure = new Throwable[1];
+    Thread writer = new Thread(() -> {
+      List<Object> batch = new ArrayList<>(BATCH_SIZE);
+      try {
+        while (true) {
+          batch.add(queue.take());
+          queue.drainTo(batch, BATCH_SIZE - 1);
+          for (Object item : batch) {
+            if (item == DONE) {
+              listener.done();
+              return;
+            }
+            @SuppressWarnings("unchecked")
+            E e = (E) item;
+            listener.listen(e);
+          }
+          batch.clear();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (Throwable t) {
+        synchronized (failure) {
+          failure[0] = t;
+        }
+        // keep consuming, so that the evolution thread is never stuck on a full queue
+        if (batch.contains(DONE)) {
+          return;
+        }
+        queue.clear();
+        while (true) {
+          try {
+            if (queue.take() == DONE) {
+              return;
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+        }
+      } finally {
+        finished.countDown();
+      }
+    }, "listener-writer");
+    writer.setDaemon(true);
+    writer.start();
+    return new Listener<>() {
+      private long blockedNanos = 0;
+
+      @Override
+      public void listen(E e) {
+        long start = System.nanoTime();
+        checkFailure();
+        try {
+          queue.put(snapshotter.apply(e));
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+        blockedNanos = blockedNanos + System.nanoTime() - start;
+      }
+
+      @Override
+      public void done() {
+        long start = System.nanoTime();
+        try {
+          queue.put(DONE);
+          // all the queued events are written before returning
+          while (!finished.await(10, TimeUnit.SECONDS)) {
+            L.fine(String.format("Waiting for %d events to be written", queue.size()));
+          }
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+        blockedNanos = blockedNanos + System.nanoTime() - start;
+        L.info(String.format("Evolution blocked in listeners for %.1fs", blockedNanos / 1e9));
+        checkFailure();
+      }
+
+      private void checkFailure() {
+        synchronized (failure) {
+          if (failure[0] != null) {
+            throw new RuntimeException("Listener failed on the writer thread", failure[0]);
+          }
+        }
+      }
+    };
+  }
+
+  @Override
+  public void shutdown() {
+    factory.shutdown();
+  }
+
+}
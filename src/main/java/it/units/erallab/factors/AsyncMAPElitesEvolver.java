@@ -0,0 +1,156 @@
+package it.units.erallab.factors;
+
+import com.google.common.base.Stopwatch;
+import it.units.malelab.jgea.core.Factory;
+import it.units.malelab.jgea.core.Individual;
+import it.units.malelab.jgea.core.evolver.Event;
+import it.units.malelab.jgea.core.listener.Listener;
+import it.units.malelab.jgea.core.operator.Mutation;
+import it.units.malelab.jgea.core.order.PartialComparator;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Steady-state MAP-Elites: each of the threads repeatedly samples an elite, mutates it, evaluates it and inserts it
+ * in the archive, without waiting for the others. An event is emitted every {@code eventEvery} evaluations, and
+ * counts as one iteration. Before starting an evaluation, a worker tests the stop condition on the event that would
+ * follow the evaluations already started, hence a births limit is never exceeded.
+ */
+public class AsyncMAPElitesEvolver<S, F> extends MAPElitesEvolver<S, F> {
+
+  protected final int nOfThreads;
+  protected final int eventEvery;
+
+  public AsyncMAPElitesEvolver(Function<Individual<List<Double>, S, F>, List<Double>> descriptor,
+                               List<Double> max,
+                               List<Double> min,
+                               List<Integer> size,
+                               Function<List<Double>, ? extends S> solutionMapper,
+                               Factory<List<Double>> genotypeFactory,
+                               PartialComparator<? super Individual<List<Double>, S, F>> individualComparator,
+                               Mutation<List<Double>> mutation, int populationSize, int nOfThreads, int eventEvery, Function<Individual<List<Double>, S, F>, Double> helper) {
+    this(new GridTessellation(size, min, max), descriptor, solutionMapper, genotypeFactory, individualComparator, mutation, populationSize, nOfThreads, eventEvery, helper);
+  }
+
+  public AsyncMAPElitesEvolver(Tessellation tessellation,
+                               Function<Individual<List<Double>, S, F>, List<Double>> descriptor,
+                               Function<List<Double>, ? extends S> solutionMapper,
+                               Factory<List<Double>> genotypeFactory,
+                               PartialComparator<? super Individual<List<Double>, S, F>> individualComparator,
+                               Mutation<List<Double>> mutation, int populationSize, int nOfThreads, int eventEvery, Function<Individual<List<Double>, S, F>, Double> helper) {
+    super(new ConcurrentMAPElitesPopulation<>(tessellation, true, descriptor, individualComparator, helper), solutionMapper, genotypeFactory, individualComparator, mutation, populationSize, eventEvery);
+    this.nOfThreads = nOfThreads;
+    this.eventEvery = eventEvery;
+  }
+
+  @Override
+  public Collection<S> solve(Function<S, F> fitnessFunction, Predicate<? super Event<List<Double>, S, F>> stopCondition, Random random, ExecutorService executor, Listener<? super Event<List<Double>, S, F>> listener) throws InterruptedException, ExecutionException {
+    State state = initState();
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    population.addAll(initPopulation(fitnessFunction, random, executor, state));
+    L.fine(String.format("Population initialized: %d individuals", population.size()));
+    int initialBirths = state.getBirths();
+    int initialFitnessEvaluations = state.getFitnessEvaluations();
+    AtomicBoolean stop = new AtomicBoolean(false);
+    // evaluations started, each worker claims one before evaluating
+    AtomicInteger claims = new AtomicInteger(0);
+    AtomicInteger evaluations = new AtomicInteger(0);
+    // one permit every eventEvery insertions
+    Semaphore ticks = new Semaphore(0);
+    List<Future<?>> workers = new ArrayList<>();
+    int counted = 0;
+    try {
+      // listeners are only invoked from this thread, the stop condition from this thread and, on projected events, from the workers
+      while (true) {
+        state.setElapsedMillis(stopwatch.elapsed(TimeUnit.MILLISECONDS));
+        Event<List<Double>, S, F> event = new Event<>(state, population);
+        listener.listen(event);
+        ((ConcurrentMAPElitesPopulation<?>) population).clearLastAdded();
+        boolean stopped;
+        synchronized (state) {
+          stopped = stopCondition.test(event);
+        }
+        if (stopped) {
+          L.fine(String.format("Stop condition met: %s", stopCondition));
+          break;
+        }
+        if (workers.isEmpty()) {
+          // started after the first event, so that the stop condition sees the events in order
+          for (int t = 0; t < nOfThreads; t++) {
+            Random workerRandom = new Random(random.nextLong());
+            workers.add(executor.submit(() -> {
+              while (!stop.get()) {
+                // the k-th evaluation is started only if the stop condition is not met once the previous ones are done
+                int k = claims.incrementAndGet();
+                State projected;
+                synchronized (state) {
+                  projected = state.copy();
+                  projected.incBirths(initialBirths + k - 1 - projected.getBirths());
+                  projected.incFitnessEvaluations(initialFitnessEvaluations + k - 1 - projected.getFitnessEvaluations());
+                  projected.setElapsedMillis(stopwatch.elapsed(TimeUnit.MILLISECONDS));
+                  if (stopCondition.test(new Event<>(projected, population))) {
+                    break;
+                  }
+                }
+                Individual<List<Double>, S, F> parent = population.sample(workerRandom);
+                List<Double> genotype = mutation.mutate(parent.getGenotype(), workerRandom);
+                S solution = solutionMapper.apply(genotype);
+                F fitness = fitnessFunction.apply(solution);
+                population.add(new Individual<>(genotype, solution, fitness, state.getIterations()));
+                if (evaluations.incrementAndGet() % eventEvery == 0) {
+                  ticks.release();
+                }
+              }
+              return null;
+            }));
+          }
+        }
+        // eventEvery more evaluations, or the last ones once the workers are done with the budget
+        boolean exhausted = false;
+        while (!ticks.tryAcquire(1, TimeUnit.SECONDS)) {
+          boolean allDone = true;
+          for (Future<?> worker : workers) {
+            if (worker.isDone()) {
+              // rethrows the failure of the worker
+              worker.get();
+            } else {
+              allDone = false;
+            }
+          }
+          if (allDone) {
+            exhausted = true;
+            break;
+          }
+        }
+        int newEvaluations = exhausted ? (evaluations.get() - counted) : eventEvery;
+        if (newEvaluations == 0) {
+          break;
+        }
+        counted = counted + newEvaluations;
+        synchronized (state) {
+          state.incBirths(newEvaluations);
+          state.incFitnessEvaluations(newEvaluations);
+          state.incIterations(1);
+        }
+      }
+    } finally {
+      stop.set(true);
+    }
+    for (Future<?> worker : workers) {
+      worker.get();
+    }
+    double seconds = stopwatch.elapsed(TimeUnit.MILLISECONDS) / 1000d;
+    L.info(String.format("%d evaluations in %d threads in %.1fs: %.2f/s", evaluations.get(), nOfThreads, seconds, evaluations.get() / seconds));
+    listener.done();
+    return population.firsts().stream()
+        .map(Individual::getSolution)
+        .collect(Collectors.toList());
+  }
+
+}
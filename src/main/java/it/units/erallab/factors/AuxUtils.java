@@ -15,6 +15,7 @@ import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
+import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -36,6 +37,109 @@ public class AuxUtils {
         );
     }
 
+    public static List<NamedFunction<Event<?, ? extends Robot<?>, ? extends Outcome>, ?>> cacheFunctions(OutcomeCache cache) {
+        return List.of(
+                f("cache.hits", "%6d", e -> cache.getHits()),
+                f("cache.misses", "%6d", e -> cache.getMisses())
+        );
+    }
+
+    public static List<NamedFunction<Event<?, ? extends Robot<?>, ? extends Outcome>, ?>> bodyCacheFunctions(RobotMapper mapper) {
+        return List.of(
+                f("body.cache.hits", "%6d", e -> mapper.getBodyCacheHits()),
+                f("body.cache.misses", "%6d", e -> mapper.getBodyCacheMisses())
+        );
+    }
+
+    public static List<NamedFunction<Event<?, ? extends Robot<?>, ? extends Outcome>, ?>> earlyStoppingFunctions(EarlyStoppingLocomotion task) {
+        return List.of(
+                f("early.stops", "%4d", delta(e -> task.getStopped(), (l1, l2) -> l1 - l2, 0L)),
+                f("early.stop.saved.time", "%7.1f", delta(e -> task.getSavedTime(), (d1, d2) -> d1 - d2, 0.0D))
+        );
+    }
+
+    // increase of a total since the previous event: functions reading the same event get the same value, and the total
+    // is not changed by reading it
+    private static <N> Function<Event<?, ? extends Robot<?>, ? extends Outcome>, N> delta(Function<Event<?, ? extends Robot<?>, ? extends Outcome>, N> total, BinaryOperator<N> minus, N zero) {
+        int[] lastIteration = new int[]{-1};
+        List<N> last = new ArrayList<>(List.of(zero, zero));
+        return e -> {
+            synchronized (last) {
+                if (e.getState().getIterations() != lastIteration[0]) {
+                    N current = total.apply(e);
+                    last.set(1, minus.apply(current, last.get(0)));
+                    last.set(0, current);
+                    lastIteration[0] = e.getState().getIterations();
+                }
+                return last.get(1);
+            }
+        };
+    }
+
+    public static List<NamedFunction<Event<?, ? extends Robot<?>, ? extends Outcome>, ?>> utilizationFunctions(UtilizationMonitor<?, ?> monitor) {
+        return List.of(
+                f("cpu.utilization", "%5.3f", e -> monitor.getUtilization())
+        );
+    }
+
+    public static List<NamedFunction<Event<?, ? extends Robot<?>, ? extends Outcome>, ?>> throughputFunctions() {
+        Function<Event<?, ? extends Robot<?>, ? extends Outcome>, Integer> evaluations = delta(e -> e.getState().getFitnessEvaluations(), (i1, i2) -> i1 - i2, 0);
+        Function<Event<?, ? extends Robot<?>, ? extends Outcome>, Long> millis = delta(e -> e.getState().getElapsedMillis(), (l1, l2) -> l1 - l2, 0L);
+        return List.of(
+                // since the previous event
+                f("eval.rate", "%7.2f", e -> {
+                    long elapsed = millis.apply(e);
+                    return elapsed == 0 ? Double.NaN : evaluations.apply(e) / (elapsed / 1000d);
+                })
+        );
+    }
+
+    public static List<NamedFunction<Event<?, ? extends Robot<?>, ? extends Outcome>, ?>> schedulingFunctions(SchedulingExecutor executor) {
+        return List.of(
+                f("eval.makespan", "%7.2f", e -> executor.getLastMakespan()),
+                f("eval.makespan.bound", "%7.2f", e -> executor.getLastLowerBound())
+        );
+    }
+
+    public static List<NamedFunction<Event<?, ? extends Robot<?>, ? extends Outcome>, ?>> speciationFunctions(MonitoredSpeciator<?> speciator) {
+        return List.of(
+                f("speciation.time", "%7.2f", e -> speciator.getLastMillis()),
+                f("speciation.iterations", "%3d", e -> speciator.getLastIterations())
+        );
+    }
+
+    public static List<NamedFunction<Event<?, ? extends Robot<?>, ? extends Outcome>, ?>> analysisFunctions() {
+        return List.of(
+                f("analysis.saved.time", "%7.3f", delta(e -> OutcomeAnalysis.getSavedSeconds(), (d1, d2) -> d1 - d2, 0.0D))
+        );
+    }
+
+    public static List<NamedFunction<Event<?, ? extends Robot<?>, ? extends Outcome>, ?>> compactionFunctions(OutcomeCompactor<?> compactor) {
+        return List.of(
+                f("compacted.outcomes", "%4d", delta(e -> compactor.getCompacted(), (l1, l2) -> l1 - l2, 0L))
+        );
+    }
+
+    public static List<NamedFunction<Event<?, ? extends Robot<?>, ? extends Outcome>, ?>> checkpointFunctions(Checkpointer<?> checkpointer) {
+        return List.of(
+                f("checkpoint.pause", "%6.2f", e -> checkpointer.getLastPauseMillis())
+        );
+    }
+
+    public static List<NamedFunction<Event<?, ? extends Robot<?>, ? extends Outcome>, ?>> archiveFunctions(MAPElitesPopulation<?> archive) {
+        Function<Event<?, ? extends Robot<?>, ? extends Outcome>, Long> added = delta(e -> archive.getAdded(), (l1, l2) -> l1 - l2, 0L);
+        Function<Event<?, ? extends Robot<?>, ? extends Outcome>, Integer> births = delta(e -> e.getState().getBirths(), (i1, i2) -> i1 - i2, 0);
+        return List.of(
+                f("archive.coverage", "%5.3f", e -> archive.coverage()),
+                f("archive.qd.score", "%8.2f", e -> archive.qdScore()),
+                // share of the individuals born since the previous event that entered the archive
+                f("archive.insertion.rate", "%5.3f", e -> {
+                    int born = births.apply(e);
+                    return born == 0 ? Double.NaN : (double) added.apply(e) / born;
+                })
+        );
+    }
+
     public static List<NamedFunction<Individual<?, ? extends Robot<?>, ? extends Outcome>, ?>> serializationFunction(boolean flag) {
         if (!flag) {
             return List.of();
@@ -43,6 +147,12 @@ public class AuxUtils {
         return List.of(f("serialized", r -> SerializationUtils.serialize(r, SerializationUtils.Mode.GZIPPED_JSON)).of(solution()));
     }
 
+    // the genotype is written in the store, only once, and just its hash is logged
+    @SuppressWarnings("unchecked")
+    public static List<NamedFunction<Individual<?, ? extends Robot<?>, ? extends Outcome>, ?>> genotypeHashFunction(GenotypeStore store) {
+        return List.of(f("genotype.hash", "%s", i -> store.put((List<Double>) i.getGenotype())));
+    }
+
     public static List<NamedFunction<Individual<?, ? extends Robot<?>, ? extends Outcome>, ?>> individualFunctions(Function<Outcome, Double> fitnessFunction) {
         NamedFunction<Individual<?, ? extends Robot<?>, ? extends Outcome>, ?> size = size().of(genotype());
         return List.of(
@@ -85,13 +195,13 @@ public class AuxUtils {
                 f("corrected.efficiency", "%5.2f", Outcome::getCorrectedEfficiency),
                 f("area.ratio.power", "%5.1f", Outcome::getAreaRatioPower),
                 f("control.power", "%5.1f", Outcome::getControlPower),
-                f("shape.dynamic", "%s", o -> Grid.toString(o.getAveragePosture(), (Predicate<Boolean>)  b -> b,"|"))
+                f("shape.dynamic", "%s", o -> Grid.toString(OutcomeAnalysis.getAveragePosture(o), (Predicate<Boolean>)  b -> b,"|"))
         );
     }
 
     public static List<NamedFunction<Outcome, ?>> detailedOutcomeFunctions(double spectrumMinFreq, double spectrumMaxFreq, int spectrumSize) {
         return Misc.concat(List.of(
-                NamedFunction.then(cachedF("gait", Outcome::getMainGait), List.of(
+                NamedFunction.then(f("gait", OutcomeAnalysis::getMainGait), List.of(
                         f("avg.touch.area", "%4.2f", g -> g == null ? null : g.getAvgTouchArea()),
                         f("coverage", "%4.2f", g -> g == null ? null : g.getCoverage()),
                         f("num.footprints", "%2d", g -> g == null ? null : g.getFootprints().size()),
@@ -100,14 +210,14 @@ public class AuxUtils {
                         f("num.unique.footprints", "%2d", g -> g == null ? null : g.getFootprints().stream().distinct().count()),
                         f("footprints", g -> g == null ? null : g.getFootprints().stream().map(Objects::toString).collect(Collectors.joining(",")))
                 )),
-                NamedFunction.then(cachedF("center.spectrum.x",
-                        o -> o.getCenterPowerSpectrum(Outcome.Component.X, spectrumMinFreq, spectrumMaxFreq, spectrumSize).stream()
+                NamedFunction.then(f("center.spectrum.x",
+                        o -> OutcomeAnalysis.getCenterPowerSpectrum(o, Outcome.Component.X, spectrumMinFreq, spectrumMaxFreq, spectrumSize).stream()
                                 .map(Outcome.Mode::getStrength)
                                 .collect(Collectors.toList())),
                         IntStream.range(0, spectrumSize).mapToObj(NamedFunctions::nth).collect(Collectors.toList())
                 ),
-                NamedFunction.then(cachedF("center.spectrum.y",
-                        o -> o.getCenterPowerSpectrum(Outcome.Component.Y, spectrumMinFreq, spectrumMaxFreq, spectrumSize).stream()
+                NamedFunction.then(f("center.spectrum.y",
+                        o -> OutcomeAnalysis.getCenterPowerSpectrum(o, Outcome.Component.Y, spectrumMinFreq, spectrumMaxFreq, spectrumSize).stream()
                                 .map(Outcome.Mode::getStrength)
                                 .collect(Collectors.toList())),
                         IntStream.range(0, spectrumSize).mapToObj(NamedFunctions::nth).collect(Collectors.toList())
@@ -135,12 +245,12 @@ public class AuxUtils {
         for (Robot<?> sol : solutions) {
             Outcome o = task.apply(sol);
             toWrite.add(printBodies(sol.getVoxels(), Objects::nonNull));
-            toWrite.add(Grid.toString(o.getAveragePosture(), (Predicate<Boolean>)  b -> b,"|"));
+            toWrite.add(Grid.toString(OutcomeAnalysis.getAveragePosture(o), (Predicate<Boolean>)  b -> b,"|"));
             toWrite.add(String.valueOf(o.getDistance()));
-            toWrite.addAll(o.getCenterPowerSpectrum(Outcome.Component.X, spectrumMinFreq, spectrumMaxFreq, spectrumSize).stream()
+            toWrite.addAll(OutcomeAnalysis.getCenterPowerSpectrum(o, Outcome.Component.X, spectrumMinFreq, spectrumMaxFreq, spectrumSize).stream()
                     .map(Outcome.Mode::getStrength).map(String::valueOf)
                     .collect(Collectors.toList()));
-            toWrite.addAll(o.getCenterPowerSpectrum(Outcome.Component.Y, spectrumMinFreq, spectrumMaxFreq, spectrumSize).stream()
+            toWrite.addAll(OutcomeAnalysis.getCenterPowerSpectrum(o, Outcome.Component.Y, spectrumMinFreq, spectrumMaxFreq, spectrumSize).stream()
                     .map(Outcome.Mode::getStrength).map(String::valueOf)
                     .collect(Collectors.toList()));
             writer.write(String.join(";", toWrite));
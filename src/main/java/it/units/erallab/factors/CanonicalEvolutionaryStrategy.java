@@ -6,27 +6,24 @@ import it.units.malelab.jgea.core.evolver.AbstractIterativeEvolver;
 import it.units.malelab.jgea.core.order.PartialComparator;
 import it.units.malelab.jgea.core.order.PartiallyOrderedCollection;
 
+import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 /**
  * @author federico
  */
-public class CanonicalEvolutionaryStrategy<S, F> extends AbstractIterativeEvolver<List<Double>, S, F> {
+public class CanonicalEvolutionaryStrategy<S, F> extends AbstractIterativeEvolver<List<Double>, S, F> implements Checkpointable {
 
     protected static class CanonicalESState extends State {
       private final double[] weights;
 
       public CanonicalESState(int iterations, int births, int fitnessEvaluations, long elapsedMillis, int parentsSize) {
         super(iterations, births, fitnessEvaluations, elapsedMillis);
-        this.weights = new double[parentsSize];
-        for (int i = 1; i < parentsSize + 1; ++i) {
-          this.weights[i - 1] = (Math.log(parentsSize) + Math.log(i)) / IntStream.range(0, parentsSize).mapToDouble(j -> Math.log(parentsSize + 0.5) - Math.log(j)).sum();
-        }
+        this.weights = weights(parentsSize);
       }
 
       public double[] getWeights() {
@@ -35,75 +32,200 @@ public class CanonicalEvolutionaryStrategy<S, F> extends AbstractIterativeEvolve
 
     }
 
-    private List<Double> mean;
+    // mean and perturbations of the current offspring, enough to rebuild them
+    private static class Snapshot implements Serializable {
+      private final double[] mean;
+      private final double[] noise;
+      private final long[] seeds;
+
+      private Snapshot(double[] mean, double[] noise, long[] seeds) {
+        this.mean = mean;
+        this.noise = noise;
+        this.seeds = seeds;
+      }
+    }
+
+    // parents x dimensions below which recombination is not worth parallelizing
+    private static final long PARALLEL_THRESHOLD = 100_000L;
+    private static final int BLOCK_SIZE = 4096;
+
+    private double[] mean;
     private final double sigma;
-    private List<List<Double>> noise;
+    // populationSize x genotype size, row-major: row i is the perturbation of the i-th offspring
+    private double[] noise;
+    // alternatively, offspring 2k and 2k+1 share seeds[k] and have opposite (antithetic) perturbations
+    private final boolean seededNoise;
+    private long[] seeds;
+    // offspring genotypes (by identity) to their noise row
+    private final Map<List<Double>, Integer> rows;
     private final int populationSize;
     private final int parentsSize;
+    private boolean resumed;
 
     public CanonicalEvolutionaryStrategy(Function<? super List<Double>, ? extends S> solutionMapper, Factory<? extends List<Double>> genotypeFactory, PartialComparator<? super Individual<List<Double>, S, F>> individualComparator, double sigma, int populationSize, int parentsSize) {
+      this(solutionMapper, genotypeFactory, individualComparator, sigma, populationSize, parentsSize, false);
+    }
+
+    public CanonicalEvolutionaryStrategy(Function<? super List<Double>, ? extends S> solutionMapper, Factory<? extends List<Double>> genotypeFactory, PartialComparator<? super Individual<List<Double>, S, F>> individualComparator, double sigma, int populationSize, int parentsSize, boolean seededNoise) {
       super(solutionMapper, genotypeFactory, individualComparator);
       this.mean = null;
       this.sigma = sigma;
       this.noise = null;
+      this.seededNoise = seededNoise;
+      this.seeds = null;
+      this.rows = new IdentityHashMap<>();
       this.populationSize = populationSize;
       this.parentsSize = parentsSize;
+      this.resumed = false;
     }
 
     @Override
     protected Collection<Individual<List<Double>, S, F>> initPopulation(Function<S, F> fitnessFunction, Random random, ExecutorService executor, State state) throws ExecutionException, InterruptedException {
-      mean = genotypeFactory.build(1, random).get(0);
-      noise = IntStream.range(0, populationSize).mapToObj(i -> mean.stream().map(j -> random.nextGaussian()).collect(Collectors.toList())).collect(Collectors.toList());
-      Collection<? extends List<Double>> genotypes = buildGenotypes(mean, noise, sigma, populationSize);
-      return AbstractIterativeEvolver.map(genotypes, List.of(), solutionMapper, fitnessFunction, executor, state);
+      if (resumed) {
+        //same offspring of the checkpoint, without consuming the random generator
+        resumed = false;
+      } else {
+        mean = DoubleVector.of(genotypeFactory.build(1, random).get(0)).values().clone();
+        if (seededNoise) {
+          seeds = new long[(populationSize + 1) / 2];
+        } else {
+          noise = new double[populationSize * mean.length];
+        }
+        sampleNoise(random);
+      }
+      return AbstractIterativeEvolver.map(buildGenotypes(), List.of(), solutionMapper, fitnessFunction, executor, state);
     }
 
     @Override
     protected Collection<Individual<List<Double>, S, F>> updatePopulation(PartiallyOrderedCollection<Individual<List<Double>, S, F>> orderedPopulation, Function<S, F> fitnessFunction, Random random, ExecutorService executor, State state) throws ExecutionException, InterruptedException {
-      List<Individual<List<Double>, S, F>> all = new ArrayList<>(orderedPopulation.all());
-      List<Integer> parents = new ArrayList<>();
-      //extract parents
-      while (parents.size() < parentsSize) {
-        int best = -1;
-        for (int j = 0; j < all.size(); ++j) {
-          if (best == -1 || individualComparator.compare(all.get(j), all.get(best)).equals(PartialComparator.PartialComparatorOutcome.BEFORE)) {
-            best = j;
-          }
-        }
-        all.remove(best);
-        parents.add(best);
+      //rank once, best first
+      List<Individual<List<Double>, S, F>> ranked = new ArrayList<>(orderedPopulation.all());
+      ranked.sort((i1, i2) -> switch (individualComparator.compare(i1, i2)) {
+        case BEFORE -> -1;
+        case AFTER -> 1;
+        default -> 0;
+      });
+      int[] parents = new int[parentsSize];
+      for (int j = 0; j < parentsSize; ++j) {
+        parents[j] = rows.get(ranked.get(j).getGenotype());
       }
       //update mean
-      CanonicalEvolutionaryStrategy.CanonicalESState s = ((CanonicalEvolutionaryStrategy.CanonicalESState) state);
-      for (int i = 0; i < mean.size(); ++i) {
-        double update = 0.0;
+      double[] weights = ((CanonicalEvolutionaryStrategy.CanonicalESState) state).getWeights();
+      int n = mean.length;
+      if (seededNoise) {
+        //regenerate the parents perturbations one at a time
+        double[] update = new double[n];
+        double[] row = new double[n];
         for (int j = 0; j < parentsSize; ++j) {
-          update += s.getWeights()[j] * noise.get(parents.get(j)).get(i);
+          noiseRow(parents[j], row);
+          for (int i = 0; i < n; ++i) {
+            update[i] += weights[j] * row[i];
+          }
         }
-        mean.set(i, mean.get(i) + sigma * update);
+        for (int i = 0; i < n; ++i) {
+          mean[i] = mean[i] + sigma * update[i];
+        }
+      } else {
+        updateMean(mean, sigma, weights, noise, parents);
       }
       //build offspring
-      for (int i = 0; i < populationSize; ++i) {
-        for (int j = 0; j < mean.size(); ++j) {
-          noise.get(i).set(j, random.nextGaussian());
+      sampleNoise(random);
+      return new ArrayList<>(map(buildGenotypes(), List.of(), solutionMapper, fitnessFunction, executor, state));
+    }
+
+    //log-decreasing with the rank (best first) and summing to 1: w_i = (log(mu + 1/2) - log(i)) / sum_j (log(mu + 1/2) - log(j)), for i, j in 1..mu
+    //FIX: the former formula summed j from 0 (log(0) = -Inf, hence all the weights were 0 and the mean never moved) and had log(mu) + log(i) as numerator
+    static double[] weights(int parentsSize) {
+      double sum = IntStream.rangeClosed(1, parentsSize).mapToDouble(j -> Math.log(parentsSize + 0.5) - Math.log(j)).sum();
+      double[] weights = new double[parentsSize];
+      for (int i = 1; i <= parentsSize; ++i) {
+        weights[i - 1] = (Math.log(parentsSize + 0.5) - Math.log(i)) / sum;
+      }
+      return weights;
+    }
+
+    //blocks of dimensions, in parallel when large enough, and one parent row at a time within a block, so that the inner loop runs on contiguous memory; each dimension sums the parents in the same order as before
+    static void updateMean(double[] mean, double sigma, double[] weights, double[] noise, int[] parents) {
+      int n = mean.length;
+      IntStream blocks = IntStream.range(0, (n + BLOCK_SIZE - 1) / BLOCK_SIZE);
+      if ((long) parents.length * n > PARALLEL_THRESHOLD) {
+        blocks = blocks.parallel();
+      }
+      blocks.forEach(b -> {
+        int from = b * BLOCK_SIZE;
+        int to = Math.min(n, from + BLOCK_SIZE);
+        double[] update = new double[to - from];
+        for (int j = 0; j < parents.length; ++j) {
+          int row = parents[j] * n;
+          for (int i = from; i < to; ++i) {
+            update[i - from] += weights[j] * noise[row + i];
+          }
+        }
+        for (int i = from; i < to; ++i) {
+          mean[i] = mean[i] + sigma * update[i - from];
+        }
+      });
+    }
+
+    //same draws, in the same order, as one list of gaussians per offspring
+    private void sampleNoise(Random random) {
+      if (seededNoise) {
+        for (int k = 0; k < seeds.length; ++k) {
+          seeds[k] = random.nextLong();
         }
+        return;
+      }
+      for (int k = 0; k < noise.length; ++k) {
+        noise[k] = random.nextGaussian();
+      }
+    }
+
+    private void noiseRow(int i, double[] row) {
+      Random rowRandom = new Random(seeds[i / 2]);
+      double sign = (i % 2 == 0) ? 1.0 : -1.0;
+      for (int j = 0; j < row.length; ++j) {
+        row[j] = sign * rowRandom.nextGaussian();
       }
-      List<List<Double>> offspringGenotypes = buildGenotypes(mean, noise, sigma, populationSize);
-      return new ArrayList<>(map(offspringGenotypes, List.of(), solutionMapper, fitnessFunction, executor, state));
     }
 
-    private static List<List<Double>> buildGenotypes(List<Double> mean, List<List<Double>> noise, double sigma, int n) {
-      List<List<Double>> offspringGenotypes = new ArrayList<>();
-      for (int i = 0; i < n; ++i) {
-        List<Double> newGenotype = new ArrayList<>();
-        for (int j = 0; j < mean.size(); ++j) {
-          newGenotype.add(mean.get(j) + sigma * noise.get(i).get(j));
+    private List<List<Double>> buildGenotypes() {
+      List<List<Double>> offspringGenotypes = new ArrayList<>(populationSize);
+      rows.clear();
+      int n = mean.length;
+      double[] row = seededNoise ? new double[n] : null;
+      for (int i = 0; i < populationSize; ++i) {
+        double[] newGenotype = new double[n];
+        if (seededNoise) {
+          noiseRow(i, row);
+          for (int j = 0; j < n; ++j) {
+            newGenotype[j] = mean[j] + sigma * row[j];
+          }
+        } else {
+          for (int j = 0; j < n; ++j) {
+            newGenotype[j] = mean[j] + sigma * noise[i * n + j];
+          }
         }
-        offspringGenotypes.add(newGenotype);
+        DoubleVector genotype = new DoubleVector(newGenotype);
+        rows.put(genotype, i);
+        offspringGenotypes.add(genotype);
       }
       return offspringGenotypes;
     }
 
+    @Override
+    public Serializable checkpoint() {
+      return new Snapshot(mean.clone(), (noise == null) ? null : noise.clone(), (seeds == null) ? null : seeds.clone());
+    }
+
+    @Override
+    public void resume(Serializable checkpoint) {
+      Snapshot snapshot = (Snapshot) checkpoint;
+      mean = snapshot.mean;
+      noise = snapshot.noise;
+      seeds = snapshot.seeds;
+      resumed = true;
+    }
+
     @Override
     protected State initState() {
       State state = super.initState();
@@ -0,0 +1,150 @@
+package it.units.erallab.factors;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * A centroidal Voronoi tessellation of a box of the descriptor space, whose size does not depend on the number of
+ * dimensions. Centroids are computed once with Lloyd iterations over uniform samples and cached in a file named
+ * after the parameters, whose header stores them all and is checked on load; the cell of a descriptor is its nearest
+ * centroid, found through a {@link KdTree}.
+ */
+public class CentroidalTessellation implements Tessellation {
+
+  private static final Logger L = Logger.getLogger(CentroidalTessellation.class.getName());
+  private static final int MAGIC = 0x43565431;
+
+  private final double[][] centroids;
+  private final KdTree tree;
+  private final int nOfNeighbours;
+
+  public CentroidalTessellation(int nOfCentroids, List<Double> min, List<Double> max, int nOfSamples, int nOfIterations, long seed, File cacheDirectory) throws IOException {
+    if (min.size() != max.size()) {
+      throw new IllegalArgumentException(String.format("Bounds have different dimensions: %d and %d", min.size(), max.size()));
+    }
+    File file = new File(cacheDirectory, String.format("cvt-%d-%d-%d-%d-%d-%08x.bin", nOfCentroids, min.size(), nOfSamples, nOfIterations, seed, Arrays.hashCode(new Object[]{min, max})));
+    double[][] loaded = file.exists() ? load(file, nOfCentroids, min, max, nOfSamples, nOfIterations, seed) : null;
+    if (loaded != null) {
+      centroids = loaded;
+      L.fine(String.format("Centroids read from %s", file));
+    } else {
+      cacheDirectory.mkdirs();
+      centroids = compute(nOfCentroids, min, max, nOfSamples, nOfIterations, new Random(seed));
+      save(file, nOfCentroids, min, max, nOfSamples, nOfIterations, seed, centroids);
+      L.fine(String.format("Centroids written to %s", file));
+    }
+    tree = new KdTree(centroids);
+    nOfNeighbours = Math.min(2 * min.size(), nOfCentroids - 1);
+  }
+
+  private static double[][] compute(int nOfCentroids, List<Double> min, List<Double> max, int nOfSamples, int nOfIterations, Random random) {
+    int dimensions = min.size();
+    double[][] samples = new double[nOfSamples][dimensions];
+    for (double[] sample : samples) {
+      for (int d = 0; d < dimensions; d++) {
+        sample[d] = min.get(d) + random.nextDouble() * (max.get(d) - min.get(d));
+      }
+    }
+    double[][] centroids = new double[nOfCentroids][];
+    for (int c = 0; c < nOfCentroids; c++) {
+      centroids[c] = samples[random.nextInt(nOfSamples)].clone();
+    }
+    double[][] sums = new double[nOfCentroids][dimensions];
+    int[] counts = new int[nOfCentroids];
+    for (int iteration = 0; iteration < nOfIterations; iteration++) {
+      KdTree tree = new KdTree(centroids);
+      for (int c = 0; c < nOfCentroids; c++) {
+        Arrays.fill(sums[c], 0);
+      }
+      Arrays.fill(counts, 0);
+      for (double[] sample : samples) {
+        int c = tree.nearest(sample);
+        counts[c] = counts[c] + 1;
+        for (int d = 0; d < dimensions; d++) {
+          sums[c][d] = sums[c][d] + sample[d];
+        }
+      }
+      // centroids without samples stay where they are
+      for (int c = 0; c < nOfCentroids; c++) {
+        if (counts[c] > 0) {
+          for (int d = 0; d < dimensions; d++) {
+            centroids[c][d] = sums[c][d] / counts[c];
+          }
+        }
+      }
+    }
+    return centroids;
+  }
+
+  // null if the file has been written for other parameters, e.g., with bounds having the same hash
+  private static double[][] load(File file, int nOfCentroids, List<Double> min, List<Double> max, int nOfSamples, int nOfIterations, long seed) throws IOException {
+    int dimensions = min.size();
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      boolean same = in.readInt() == MAGIC
+          && in.readInt() == nOfCentroids
+          && in.readInt() == dimensions
+          && in.readInt() == nOfSamples
+          && in.readInt() == nOfIterations
+          && in.readLong() == seed;
+      for (int d = 0; same && d < dimensions; d++) {
+        same = Double.compare(in.readDouble(), min.get(d)) == 0 && Double.compare(in.readDouble(), max.get(d)) == 0;
+      }
+      if (!same) {
+        L.warning(String.format("Centroids in %s have been computed with other parameters: computing them again", file));
+        return null;
+      }
+      double[][] centroids = new double[nOfCentroids][dimensions];
+      for (double[] centroid : centroids) {
+        for (int d = 0; d < dimensions; d++) {
+          centroid[d] = in.readDouble();
+        }
+      }
+      return centroids;
+    }
+  }
+
+  // written aside and then moved, so that concurrent runs never read a partial file
+  private static void save(File file, int nOfCentroids, List<Double> min, List<Double> max, int nOfSamples, int nOfIterations, long seed, double[][] centroids) throws IOException {
+    File tmpFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(nOfCentroids);
+      out.writeInt(min.size());
+      out.writeInt(nOfSamples);
+      out.writeInt(nOfIterations);
+      out.writeLong(seed);
+      for (int d = 0; d < min.size(); d++) {
+        out.writeDouble(min.get(d));
+        out.writeDouble(max.get(d));
+      }
+      for (double[] centroid : centroids) {
+        for (double v : centroid) {
+          out.writeDouble(v);
+        }
+      }
+    }
+    Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  @Override
+  public int size() {
+    return centroids.length;
+  }
+
+  @Override
+  public int cell(List<Double> descriptor) {
+    return tree.nearest(DoubleVector.of(descriptor).values());
+  }
+
+  // the closest centroids, excluding the centroid itself
+  @Override
+  public int[] neighbours(int cell) {
+    return Arrays.copyOfRange(tree.nearest(centroids[cell], nOfNeighbours + 1), 1, nOfNeighbours + 1);
+  }
+
+}
@@ -0,0 +1,112 @@
+package it.units.erallab.factors;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The state of a run at an event: counters, genotypes of the population, state of the random generator and the states
+ * of the {@link Checkpointable} parts of the run, e.g., the evolver or the speciator, by name. Written with an atomic
+ * rename, so that the file on disk is always a complete checkpoint.
+ */
+public class Checkpoint implements Serializable {
+
+  private static final long serialVersionUID = 2L;
+
+  private final long iterations;
+  private final long births;
+  private final long fitnessEvaluations;
+  private final long elapsedMillis;
+  private final byte[] random;
+  private final List<double[]> genotypes;
+  private final Map<String, Serializable> states;
+
+  public Checkpoint(long iterations, long births, long fitnessEvaluations, long elapsedMillis, byte[] random, List<double[]> genotypes, Map<String, Serializable> states) {
+    this.iterations = iterations;
+    this.births = births;
+    this.fitnessEvaluations = fitnessEvaluations;
+    this.elapsedMillis = elapsedMillis;
+    this.random = random;
+    this.genotypes = genotypes;
+    this.states = states;
+  }
+
+  public static byte[] serialize(Random random) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(random);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  public static Random deserialize(byte[] random) {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(random))) {
+      return (Random) in.readObject();
+    } catch (IOException | ClassNotFoundException e) {
+      throw new IllegalStateException("Cannot restore the random generator", e);
+    }
+  }
+
+  public static Checkpoint load(File file) throws IOException {
+    try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      return (Checkpoint) in.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IOException(String.format("%s is not a checkpoint", file), e);
+    }
+  }
+
+  public void save(File file) throws IOException {
+    File tmp = new File(file.getPath() + ".tmp");
+    try (FileOutputStream fileOut = new FileOutputStream(tmp)) {
+      ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(fileOut));
+      out.writeObject(this);
+      out.flush();
+      fileOut.getFD().sync();
+    }
+    Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  public long getIterations() {
+    return iterations;
+  }
+
+  public long getBirths() {
+    return births;
+  }
+
+  public long getFitnessEvaluations() {
+    return fitnessEvaluations;
+  }
+
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  public Random getRandom() {
+    return deserialize(random);
+  }
+
+  public List<List<Double>> getGenotypes() {
+    List<List<Double>> list = new ArrayList<>(genotypes.size());
+    for (double[] genotype : genotypes) {
+      list.add(new DoubleVector(genotype.clone()));
+    }
+    return list;
+  }
+
+  public int getNOfGenotypes() {
+    return genotypes.size();
+  }
+
+  // null if the part was not checkpointed
+  public Serializable getState(String name) {
+    return states.get(name);
+  }
+
+}
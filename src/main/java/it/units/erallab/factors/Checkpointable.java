@@ -0,0 +1,17 @@
+package it.units.erallab.factors;
+
+import java.io.Serializable;
+
+/**
+ * A part of a run whose state is not carried by the population, e.g., the mean and the perturbations of an
+ * evolutionary strategy or the centroids of a speciator, and that can be restored from a {@link Checkpoint}.
+ */
+public interface Checkpointable {
+
+  // called from the evolution thread at an event: the returned object must not change afterwards
+  Serializable checkpoint();
+
+  // called before solve(), which then continues from the state of the checkpoint
+  void resume(Serializable checkpoint);
+
+}
@@ -0,0 +1,132 @@
+package it.units.erallab.factors;
+
+import it.units.malelab.jgea.core.Individual;
+import it.units.malelab.jgea.core.evolver.Event;
+import it.units.malelab.jgea.core.listener.Listener;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Takes a {@link Checkpoint} at the first event after every {@code everySeconds} seconds. The evolution thread only
+ * copies the genotypes, the random generator and the states of the registered parts; serialization and writing happen
+ * on a background thread. A checkpoint is skipped if the previous one is still being written.
+ */
+public class Checkpointer<E extends Event<?, ?, ?>> implements Listener.Factory<E> {
+
+  private static final Logger L = Logger.getLogger(Checkpointer.class.getName());
+
+  private final File file;
+  private final long everyMillis;
+  private final Random random;
+  private final ExecutorService writer;
+  private final Map<String, Checkpointable> parts;
+  private Future<?> lastWrite;
+  private long lastMillis;
+  private double lastPauseMillis;
+  private double maxPauseMillis;
+  private int count;
+
+  public Checkpointer(File file, double everySeconds, Random random) {
+    this.file = file;
+    this.everyMillis = Math.round(everySeconds * 1000d);
+    this.random = random;
+    this.writer = Executors.newSingleThreadExecutor(r -> {
+      Thread thread = new Thread(r, "checkpoint-writer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.parts = new LinkedHashMap<>();
+    this.lastMillis = System.currentTimeMillis();
+    this.lastPauseMillis = Double.NaN;
+  }
+
+  // to be called before solve()
+  public void register(String name, Checkpointable part) {
+    parts.put(name, part);
+  }
+
+  // time the evolution thread was paused by the last checkpoint
+  public synchronized double getLastPauseMillis() {
+    return lastPauseMillis;
+  }
+
+  @Override
+  public Listener<E> build() {
+    return new Listener<>() {
+      @Override
+      public void listen(E e) {
+        if (System.currentTimeMillis() - lastMillis < everyMillis || (lastWrite != null && !lastWrite.isDone())) {
+          return;
+        }
+        long start = System.nanoTime();
+        Checkpoint checkpoint = take(e);
+        synchronized (Checkpointer.this) {
+          lastPauseMillis = (System.nanoTime() - start) / 1e6;
+          maxPauseMillis = Math.max(maxPauseMillis, lastPauseMillis);
+          count = count + 1;
+        }
+        lastMillis = System.currentTimeMillis();
+        lastWrite = writer.submit(() -> {
+          checkpoint.save(file);
+          return null;
+        });
+      }
+
+      @Override
+      public void done() {
+        // the last checkpoint is complete on disk when the run ends
+        if (lastWrite != null) {
+          try {
+            lastWrite.get();
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          } catch (ExecutionException ex) {
+            L.warning(String.format("Cannot write checkpoint %s due to %s", file, ex.getCause()));
+          }
+        }
+        synchronized (Checkpointer.this) {
+          L.info(String.format("%d checkpoints, max pause %.2fms", count, maxPauseMillis));
+        }
+      }
+    };
+  }
+
+  private Checkpoint take(E e) {
+    List<double[]> genotypes = new ArrayList<>(e.getOrderedPopulation().all().size());
+    for (Individual<?, ?, ?> individual : e.getOrderedPopulation().all()) {
+      @SuppressWarnings("unchecked")
+      List<Double> genotype = (List<Double>) individual.getGenotype();
+      // genotypes are never modified once built, hence they are not copied
+      genotypes.add(DoubleVector.of(genotype).values());
+    }
+    Map<String, Serializable> states = new HashMap<>();
+    parts.forEach((name, part) -> states.put(name, part.checkpoint()));
+    return new Checkpoint(
+        e.getState().getIterations(),
+        e.getState().getBirths(),
+        e.getState().getFitnessEvaluations(),
+        e.getState().getElapsedMillis(),
+        Checkpoint.serialize(random),
+        genotypes,
+        states
+    );
+  }
+
+  @Override
+  public void shutdown() {
+    writer.shutdown();
+  }
+
+}
@@ -0,0 +1,195 @@
+package it.units.erallab.factors;
+
+import it.units.malelab.jgea.core.listener.Listener;
+import it.units.malelab.jgea.core.listener.NamedFunction;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+
+/**
+ * A replacement for the CSV printer writing a binary, columnar file: rows are buffered in chunks, and each chunk
+ * stores every column as either primitive doubles, primitive longs or indexes in a dictionary of strings, compressed
+ * independently. Numbers are formatted only when converted to CSV, other values are stored already formatted. The file
+ * is readable (with {@link ColumnarReader}) after each written chunk.
+ * <p>
+ * Layout: magic, version, number of columns, then name and format of each column; then chunks, each made of its
+ * length in bytes, the number of rows and, for each column, type, raw length, compressed length and compressed
+ * bytes. Raw bytes start with the bitmask of the missing values, one bit per row, followed by the values, where missing
+ * ones are zeros. Strings are UTF-8 bytes preceded by their length.
+ */
+public class ColumnarPrinter<E> implements Listener.Factory<E> {
+
+    private static final Logger L = Logger.getLogger(ColumnarPrinter.class.getName());
+
+    public static final int MAGIC = 0x56535243;
+    public static final int VERSION = 2;
+    public static final byte DOUBLE = 0;
+    public static final byte LONG = 1;
+    public static final byte STRING = 2;
+    private static final int CHUNK_SIZE = 1024;
+
+    private final List<? extends NamedFunction<? super E, ?>> functions;
+    private final File file;
+    private final List<Object[]> rows;
+    private DataOutputStream out;
+
+    public ColumnarPrinter(List<? extends NamedFunction<? super E, ?>> functions, File file) {
+        this.functions = functions;
+        this.file = file;
+        this.rows = new ArrayList<>(CHUNK_SIZE);
+    }
+
+    @Override
+    public Listener<E> build() {
+        return new Listener<>() {
+            @Override
+            public void listen(E e) {
+                Object[] row = new Object[functions.size()];
+                for (int i = 0; i < row.length; ++i) {
+                    row[i] = functions.get(i).apply(e);
+                }
+                synchronized (ColumnarPrinter.this) {
+                    rows.add(row);
+                    if (rows.size() >= CHUNK_SIZE) {
+                        flush();
+                    }
+                }
+            }
+
+            @Override
+            public void done() {
+                synchronized (ColumnarPrinter.this) {
+                    flush();
+                }
+            }
+        };
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        flush();
+        if (this.out != null) {
+            try {
+                this.out.close();
+            } catch (IOException e) {
+                L.warning(String.format("Cannot close %s due to %s", this.file, e));
+            }
+            this.out = null;
+        }
+    }
+
+    private void flush() {
+        if (this.rows.isEmpty()) {
+            return;
+        }
+        try {
+            if (this.out == null) {
+                this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file)));
+                this.out.writeInt(MAGIC);
+                this.out.writeInt(VERSION);
+                this.out.writeInt(this.functions.size());
+                for (NamedFunction<? super E, ?> function : this.functions) {
+                    writeString(this.out, function.getName());
+                    writeString(this.out, function.getFormat());
+                }
+            }
+            ByteArrayOutputStream chunkBytes = new ByteArrayOutputStream();
+            DataOutputStream chunk = new DataOutputStream(chunkBytes);
+            chunk.writeInt(this.rows.size());
+            Deflater deflater = new Deflater();
+            for (int c = 0; c < this.functions.size(); ++c) {
+                byte type = type(c);
+                byte[] raw = column(c, type);
+                deflater.reset();
+                deflater.setInput(raw);
+                deflater.finish();
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2 + 16);
+                byte[] buffer = new byte[8192];
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(buffer);
+                    compressed.write(buffer, 0, n);
+                }
+                chunk.writeByte(type);
+                chunk.writeInt(raw.length);
+                chunk.writeInt(compressed.size());
+                compressed.writeTo(chunk);
+            }
+            deflater.end();
+            this.out.writeInt(chunkBytes.size());
+            chunkBytes.writeTo(this.out);
+            this.out.flush();
+        } catch (IOException e) {
+            L.warning(String.format("Cannot write %d rows on %s due to %s", this.rows.size(), this.file, e));
+        }
+        this.rows.clear();
+    }
+
+    // the narrowest type that can hold all the values of the column in the current chunk
+    private byte type(int c) {
+        byte type = LONG;
+        for (Object[] row : this.rows) {
+            Object value = row[c];
+            if (value == null) {
+                continue;
+            }
+            if (value instanceof Double || value instanceof Float) {
+                type = DOUBLE;
+            } else if (!(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)) {
+                return STRING;
+            }
+        }
+        return type;
+    }
+
+    private byte[] column(int c, byte type) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream column = new DataOutputStream(bytes);
+        BitSet missing = new BitSet(this.rows.size());
+        for (int r = 0; r < this.rows.size(); ++r) {
+            missing.set(r, this.rows.get(r)[c] == null);
+        }
+        column.write(Arrays.copyOf(missing.toByteArray(), (this.rows.size() + 7) / 8));
+        if (type == STRING) {
+            String format = this.functions.get(c).getFormat();
+            Map<String, Integer> dictionary = new LinkedHashMap<>();
+            int[] indexes = new int[this.rows.size()];
+            for (int r = 0; r < indexes.length; ++r) {
+                Object value = this.rows.get(r)[c];
+                indexes[r] = (value == null) ? 0 : dictionary.computeIfAbsent(format(format, value), s -> dictionary.size());
+            }
+            column.writeInt(dictionary.size());
+            for (String s : dictionary.keySet()) {
+                writeString(column, s);
+            }
+            for (int index : indexes) {
+                column.writeInt(index);
+            }
+        } else {
+            for (Object[] row : this.rows) {
+                Number value = (Number) row[c];
+                if (type == DOUBLE) {
+                    column.writeDouble((value == null) ? 0.0D : value.doubleValue());
+                } else {
+                    column.writeLong((value == null) ? 0L : value.longValue());
+                }
+            }
+        }
+        column.flush();
+        return bytes.toByteArray();
+    }
+
+    // as in the CSV of the CSV printer: missing values are empty
+    static String format(String format, Object value) {
+        return (value == null) ? "" : String.format(format, value).trim();
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+}
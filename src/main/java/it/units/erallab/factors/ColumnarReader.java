@@ -0,0 +1,247 @@
+package it.units.erallab.factors;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the files written by {@link ColumnarPrinter} chunk by chunk, memory-mapping each chunk. When run as main,
+ * converts such a file to the CSV the CSV printer would have written.
+ */
+public class ColumnarReader implements Iterable<ColumnarReader.Chunk>, Closeable {
+
+    // missing values are zeros in the arrays of primitives, and nulls otherwise
+    public static class Chunk {
+        private final int size;
+        private final byte[] types;
+        private final BitSet[] missing;
+        private final Object[] columns;
+
+        private Chunk(int size, byte[] types, BitSet[] missing, Object[] columns) {
+            this.size = size;
+            this.types = types;
+            this.missing = missing;
+            this.columns = columns;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public byte getType(int column) {
+            return types[column];
+        }
+
+        public boolean isMissing(int column, int row) {
+            return missing[column].get(row);
+        }
+
+        public double[] getDoubles(int column) {
+            return (double[]) columns[column];
+        }
+
+        public long[] getLongs(int column) {
+            return (long[]) columns[column];
+        }
+
+        public String getString(int column, int row) {
+            if (isMissing(column, row)) {
+                return null;
+            }
+            Object[] dictionaryAndIndexes = (Object[]) columns[column];
+            return ((String[]) dictionaryAndIndexes[0])[((int[]) dictionaryAndIndexes[1])[row]];
+        }
+
+        public Object get(int column, int row) {
+            if (isMissing(column, row)) {
+                return null;
+            }
+            return switch (types[column]) {
+                case ColumnarPrinter.DOUBLE -> getDoubles(column)[row];
+                case ColumnarPrinter.LONG -> getLongs(column)[row];
+                default -> getString(column, row);
+            };
+        }
+    }
+
+    private final FileChannel channel;
+    private final List<String> names;
+    private final List<String> formats;
+    private final long firstChunkPosition;
+
+    public ColumnarReader(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try (in) {
+            if (in.readInt() != ColumnarPrinter.MAGIC) {
+                throw new IOException(String.format("%s is not a columnar file", file));
+            }
+            int version = in.readInt();
+            if (version != ColumnarPrinter.VERSION) {
+                throw new IOException(String.format("Unsupported columnar file version: %d", version));
+            }
+            int nOfColumns = in.readInt();
+            names = new ArrayList<>(nOfColumns);
+            formats = new ArrayList<>(nOfColumns);
+            long position = 12;
+            for (int c = 0; c < nOfColumns; ++c) {
+                byte[] name = readBytes(in);
+                byte[] format = readBytes(in);
+                names.add(new String(name, StandardCharsets.UTF_8));
+                formats.add(new String(format, StandardCharsets.UTF_8));
+                position += 8 + name.length + format.length;
+            }
+            firstChunkPosition = position;
+        }
+    }
+
+    public List<String> getNames() {
+        return names;
+    }
+
+    public List<String> getFormats() {
+        return formats;
+    }
+
+    @Override
+    public Iterator<Chunk> iterator() {
+        return new Iterator<>() {
+            private long position = firstChunkPosition;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    // a partially written chunk is ignored
+                    return position + 4 <= channel.size() && position + 4 + chunkLength(position) <= channel.size();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public Chunk next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    int length = chunkLength(position);
+                    Chunk chunk = readChunk(channel.map(FileChannel.MapMode.READ_ONLY, position + 4, length));
+                    position = position + 4 + length;
+                    return chunk;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    private int chunkLength(long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        return buffer.getInt(0);
+    }
+
+    private Chunk readChunk(ByteBuffer buffer) throws IOException {
+        int size = buffer.getInt();
+        byte[] types = new byte[names.size()];
+        BitSet[] missing = new BitSet[names.size()];
+        Object[] columns = new Object[names.size()];
+        Inflater inflater = new Inflater();
+        try {
+            for (int c = 0; c < types.length; ++c) {
+                types[c] = buffer.get();
+                byte[] raw = new byte[buffer.getInt()];
+                int compressedLength = buffer.getInt();
+                ByteBuffer compressed = buffer.slice();
+                compressed.limit(compressedLength);
+                buffer.position(buffer.position() + compressedLength);
+                inflater.reset();
+                inflater.setInput(compressed);
+                try {
+                    inflater.inflate(raw);
+                } catch (DataFormatException e) {
+                    throw new IOException(String.format("Corrupted column %s", names.get(c)), e);
+                }
+                ByteBuffer column = ByteBuffer.wrap(raw);
+                byte[] mask = new byte[(size + 7) / 8];
+                column.get(mask);
+                missing[c] = BitSet.valueOf(mask);
+                if (types[c] == ColumnarPrinter.DOUBLE) {
+                    double[] values = new double[size];
+                    column.asDoubleBuffer().get(values);
+                    columns[c] = values;
+                } else if (types[c] == ColumnarPrinter.LONG) {
+                    long[] values = new long[size];
+                    column.asLongBuffer().get(values);
+                    columns[c] = values;
+                } else {
+                    String[] dictionary = new String[column.getInt()];
+                    for (int i = 0; i < dictionary.length; ++i) {
+                        byte[] bytes = new byte[column.getInt()];
+                        column.get(bytes);
+                        dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+                    }
+                    int[] indexes = new int[size];
+                    column.asIntBuffer().get(indexes);
+                    columns[c] = new Object[]{dictionary, indexes};
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+        return new Chunk(size, types, missing, columns);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public void toCSV(PrintStream out) {
+        out.println(String.join(";", names));
+        for (Chunk chunk : this) {
+            for (int r = 0; r < chunk.size(); ++r) {
+                List<String> values = new ArrayList<>(names.size());
+                for (int c = 0; c < names.size(); ++c) {
+                    // strings are stored already formatted
+                    values.add(escape((chunk.getType(c) == ColumnarPrinter.STRING) ? Objects.toString(chunk.getString(c, r), "") : ColumnarPrinter.format(formats.get(c), chunk.get(c, r))));
+                }
+                out.println(String.join(";", values));
+            }
+        }
+    }
+
+    private static String escape(String s) {
+        if (s.contains(";") || s.contains("\"") || s.contains("\n")) {
+            return "\"" + s.replace("\"", "\"\"") + "\"";
+        }
+        return s;
+    }
+
+    public static void main(String[] args) throws IOException {
+        try (ColumnarReader reader = new ColumnarReader(new File(args[0])); PrintStream out = new PrintStream(new FileOutputStream(args[1]))) {
+            reader.toCSV(out);
+        }
+    }
+
+}
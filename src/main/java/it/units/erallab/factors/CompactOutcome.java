@@ -0,0 +1,242 @@
+package it.units.erallab.factors;
+
+import it.units.erallab.hmsrobots.tasks.locomotion.Outcome;
+import it.units.erallab.hmsrobots.util.Grid;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * An outcome without its trajectory: the values read by the evolvers and by the listeners are computed once from the
+ * full outcome, or accumulated during the episode by an {@link OutcomeAccumulator}, and kept in fields. Only the
+ * overridden methods are supported, with spectra only for the frequency range and the number of bins given at
+ * construction: {@link #getObservations()} throws, as does any other method of {@link Outcome} reading the trajectory.
+ */
+public class CompactOutcome extends Outcome {
+
+    private final double computationTime;
+    private final double distance;
+    private final double velocity;
+    private final double correctedEfficiency;
+    private final double areaRatioPower;
+    private final double controlPower;
+    private final Grid<Boolean> averagePosture;
+    private final Outcome.Gait mainGait;
+    private final double spectrumMinFrequency;
+    private final double spectrumMaxFrequency;
+    private final int spectrumSize;
+    // keyed as in OutcomeAnalysis, hence on the component and on the range
+    private final Map<String, List<Outcome.Mode>> spectra;
+
+    // the trajectory given to Outcome: empty, and failing on any access once the outcome is built
+    static final class NoTrajectory implements InvocationHandler {
+        private final SortedMap<Double, Outcome.Observation> empty = Collections.emptySortedMap();
+        private volatile boolean armed;
+
+        @SuppressWarnings("unchecked")
+        SortedMap<Double, Outcome.Observation> map() {
+            return (SortedMap<Double, Outcome.Observation>) Proxy.newProxyInstance(SortedMap.class.getClassLoader(), new Class<?>[]{SortedMap.class}, this);
+        }
+
+        void arm() {
+            armed = true;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (armed && method.getDeclaringClass() != Object.class) {
+                throw new UnsupportedOperationException(String.format("Compact outcomes have no trajectory: %s is not supported", method.getName()));
+            }
+            try {
+                return method.invoke(empty, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private CompactOutcome(NoTrajectory trajectory, double[] values, Grid<Boolean> averagePosture, Outcome.Gait mainGait, double spectrumMinFrequency, double spectrumMaxFrequency, int spectrumSize, Map<Outcome.Component, List<Outcome.Mode>> spectra) {
+        super(trajectory.map());
+        this.computationTime = values[0];
+        this.distance = values[1];
+        this.velocity = values[2];
+        this.correctedEfficiency = values[3];
+        this.areaRatioPower = values[4];
+        this.controlPower = values[5];
+        this.averagePosture = averagePosture;
+        this.mainGait = mainGait;
+        this.spectrumMinFrequency = spectrumMinFrequency;
+        this.spectrumMaxFrequency = spectrumMaxFrequency;
+        this.spectrumSize = spectrumSize;
+        this.spectra = new HashMap<>();
+        for (Outcome.Component component : Outcome.Component.values()) {
+            this.spectra.put(OutcomeAnalysis.spectrumKey(component, spectrumMinFrequency, spectrumMaxFrequency, spectrumSize), spectra.get(component));
+        }
+        trajectory.arm();
+    }
+
+    public static Outcome of(Outcome outcome, double spectrumMinFrequency, double spectrumMaxFrequency, int spectrumSize) {
+        if (outcome instanceof CompactOutcome) {
+            return outcome;
+        }
+        Map<Outcome.Component, List<Outcome.Mode>> spectra = new EnumMap<>(Outcome.Component.class);
+        for (Outcome.Component component : Outcome.Component.values()) {
+            spectra.put(component, List.copyOf(OutcomeAnalysis.getCenterPowerSpectrum(outcome, component, spectrumMinFrequency, spectrumMaxFrequency, spectrumSize)));
+        }
+        return of(outcome, OutcomeAnalysis.getAveragePosture(outcome), OutcomeAnalysis.getMainGait(outcome), spectrumMinFrequency, spectrumMaxFrequency, spectrumSize, spectra);
+    }
+
+    // values read from an outcome of the first and the last observations, the rest accumulated during the episode
+    public static CompactOutcome of(Outcome endpoints, Grid<Boolean> averagePosture, Outcome.Gait mainGait, double spectrumMinFrequency, double spectrumMaxFrequency, int spectrumSize, Map<Outcome.Component, List<Outcome.Mode>> spectra) {
+        double[] values = new double[]{endpoints.getComputationTime(), endpoints.getDistance(), endpoints.getVelocity(), endpoints.getCorrectedEfficiency(), endpoints.getAreaRatioPower(), endpoints.getControlPower()};
+        return new CompactOutcome(new NoTrajectory(), values, averagePosture, mainGait, spectrumMinFrequency, spectrumMaxFrequency, spectrumSize, spectra);
+    }
+
+    // the summary only, in a few hundred bytes: used by the evaluation workers to send back their outcomes
+    public void write(DataOutput out) throws IOException {
+        for (double value : new double[]{computationTime, distance, velocity, correctedEfficiency, areaRatioPower, controlPower}) {
+            out.writeDouble(value);
+        }
+        out.writeInt(averagePosture.getW());
+        out.writeInt(averagePosture.getH());
+        for (int x = 0; x < averagePosture.getW(); ++x) {
+            for (int y = 0; y < averagePosture.getH(); ++y) {
+                out.writeBoolean(Boolean.TRUE.equals(averagePosture.get(x, y)));
+            }
+        }
+        out.writeBoolean(mainGait != null);
+        if (mainGait != null) {
+            out.writeInt(mainGait.getFootprints().size());
+            for (Outcome.Footprint footprint : mainGait.getFootprints()) {
+                boolean[] mask = footprint.getMask();
+                out.writeInt(mask.length);
+                for (boolean touching : mask) {
+                    out.writeBoolean(touching);
+                }
+            }
+            out.writeDouble(mainGait.getModeInterval());
+            out.writeDouble(mainGait.getCoverage());
+            out.writeDouble(mainGait.getDuration());
+            out.writeDouble(mainGait.getPurity());
+        }
+        out.writeDouble(spectrumMinFrequency);
+        out.writeDouble(spectrumMaxFrequency);
+        out.writeInt(spectrumSize);
+        for (Outcome.Component component : Outcome.Component.values()) {
+            List<Outcome.Mode> modes = spectra.get(OutcomeAnalysis.spectrumKey(component, spectrumMinFrequency, spectrumMaxFrequency, spectrumSize));
+            out.writeInt(modes.size());
+            for (Outcome.Mode mode : modes) {
+                out.writeDouble(mode.getFrequency());
+                out.writeDouble(mode.getStrength());
+            }
+        }
+    }
+
+    public static CompactOutcome read(DataInput in) throws IOException {
+        double[] values = new double[6];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = in.readDouble();
+        }
+        int w = in.readInt();
+        int h = in.readInt();
+        Grid<Boolean> averagePosture = Grid.create(w, h);
+        for (int x = 0; x < w; ++x) {
+            for (int y = 0; y < h; ++y) {
+                averagePosture.set(x, y, in.readBoolean());
+            }
+        }
+        Outcome.Gait mainGait = null;
+        if (in.readBoolean()) {
+            List<Outcome.Footprint> footprints = new ArrayList<>();
+            int nOfFootprints = in.readInt();
+            for (int i = 0; i < nOfFootprints; ++i) {
+                boolean[] mask = new boolean[in.readInt()];
+                for (int j = 0; j < mask.length; ++j) {
+                    mask[j] = in.readBoolean();
+                }
+                footprints.add(new Outcome.Footprint(mask));
+            }
+            mainGait = new Outcome.Gait(footprints, in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+        }
+        double spectrumMinFrequency = in.readDouble();
+        double spectrumMaxFrequency = in.readDouble();
+        int spectrumSize = in.readInt();
+        Map<Outcome.Component, List<Outcome.Mode>> spectra = new EnumMap<>(Outcome.Component.class);
+        for (Outcome.Component component : Outcome.Component.values()) {
+            List<Outcome.Mode> modes = new ArrayList<>();
+            int nOfModes = in.readInt();
+            for (int i = 0; i < nOfModes; ++i) {
+                modes.add(new Outcome.Mode(in.readDouble(), in.readDouble()));
+            }
+            spectra.put(component, List.copyOf(modes));
+        }
+        return new CompactOutcome(new NoTrajectory(), values, averagePosture, mainGait, spectrumMinFrequency, spectrumMaxFrequency, spectrumSize, spectra);
+    }
+
+    @Override
+    public SortedMap<Double, Outcome.Observation> getObservations() {
+        throw new UnsupportedOperationException("Compact outcomes have no trajectory");
+    }
+
+    @Override
+    public double getComputationTime() {
+        return computationTime;
+    }
+
+    @Override
+    public double getDistance() {
+        return distance;
+    }
+
+    @Override
+    public double getVelocity() {
+        return velocity;
+    }
+
+    @Override
+    public double getCorrectedEfficiency() {
+        return correctedEfficiency;
+    }
+
+    @Override
+    public double getAreaRatioPower() {
+        return areaRatioPower;
+    }
+
+    @Override
+    public double getControlPower() {
+        return controlPower;
+    }
+
+    @Override
+    public Grid<Boolean> getAveragePosture() {
+        return averagePosture;
+    }
+
+    @Override
+    public Outcome.Gait getMainGait() {
+        return mainGait;
+    }
+
+    @Override
+    public List<Outcome.Mode> getCenterPowerSpectrum(Outcome.Component component, double minFrequency, double maxFrequency, int nBins) {
+        List<Outcome.Mode> modes = spectra.get(OutcomeAnalysis.spectrumKey(component, minFrequency, maxFrequency, nBins));
+        if (modes == null) {
+            throw new UnsupportedOperationException(String.format("Compact outcomes have no %s spectrum in [%s, %s] Hz with %d bins, only in [%s, %s] Hz with %d bins", component, minFrequency, maxFrequency, nBins, spectrumMinFrequency, spectrumMaxFrequency, spectrumSize));
+        }
+        return modes;
+    }
+
+}
@@ -0,0 +1,95 @@
+package it.units.erallab.factors;
+
+import it.units.erallab.hmsrobots.tasks.locomotion.Outcome;
+import it.units.erallab.hmsrobots.util.Grid;
+
+import java.util.List;
+import java.util.SortedMap;
+
+/**
+ * An outcome delegating to the full one until {@link #compact()} is called, and to a {@link CompactOutcome} afterwards:
+ * values do not change, hence it can be compacted while being read. Only the overridden methods are supported: once
+ * compacted, {@link #getObservations()} throws, as do spectra other than the ones given at construction; any other
+ * method of {@link Outcome} reading the trajectory always throws.
+ */
+public class CompactableOutcome extends Outcome {
+
+    private final double spectrumMinFrequency;
+    private final double spectrumMaxFrequency;
+    private final int spectrumSize;
+    private volatile Outcome outcome;
+
+    public CompactableOutcome(Outcome outcome, double spectrumMinFrequency, double spectrumMaxFrequency, int spectrumSize) {
+        this(new CompactOutcome.NoTrajectory(), outcome, spectrumMinFrequency, spectrumMaxFrequency, spectrumSize);
+    }
+
+    private CompactableOutcome(CompactOutcome.NoTrajectory trajectory, Outcome outcome, double spectrumMinFrequency, double spectrumMaxFrequency, int spectrumSize) {
+        super(trajectory.map());
+        this.spectrumMinFrequency = spectrumMinFrequency;
+        this.spectrumMaxFrequency = spectrumMaxFrequency;
+        this.spectrumSize = spectrumSize;
+        this.outcome = outcome;
+        trajectory.arm();
+    }
+
+    // true if the trajectory has been dropped by this call
+    public synchronized boolean compact() {
+        if (outcome instanceof CompactOutcome) {
+            return false;
+        }
+        outcome = CompactOutcome.of(outcome, spectrumMinFrequency, spectrumMaxFrequency, spectrumSize);
+        return true;
+    }
+
+    @Override
+    public SortedMap<Double, Outcome.Observation> getObservations() {
+        return outcome.getObservations();
+    }
+
+    @Override
+    public double getComputationTime() {
+        return outcome.getComputationTime();
+    }
+
+    @Override
+    public double getDistance() {
+        return outcome.getDistance();
+    }
+
+    @Override
+    public double getVelocity() {
+        return outcome.getVelocity();
+    }
+
+    @Override
+    public double getCorrectedEfficiency() {
+        return outcome.getCorrectedEfficiency();
+    }
+
+    @Override
+    public double getAreaRatioPower() {
+        return outcome.getAreaRatioPower();
+    }
+
+    @Override
+    public double getControlPower() {
+        return outcome.getControlPower();
+    }
+
+    // through the analysis of the delegate, so that compaction reuses what has been computed before
+    @Override
+    public Grid<Boolean> getAveragePosture() {
+        return OutcomeAnalysis.getAveragePosture(outcome);
+    }
+
+    @Override
+    public Outcome.Gait getMainGait() {
+        return OutcomeAnalysis.getMainGait(outcome);
+    }
+
+    @Override
+    public List<Outcome.Mode> getCenterPowerSpectrum(Outcome.Component component, double minFrequency, double maxFrequency, int nBins) {
+        return OutcomeAnalysis.getCenterPowerSpectrum(outcome, component, minFrequency, maxFrequency, nBins);
+    }
+
+}
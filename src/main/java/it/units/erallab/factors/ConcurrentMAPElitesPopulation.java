@@ -0,0 +1,127 @@
+package it.units.erallab.factors;
+
+import it.units.malelab.jgea.core.order.PartialComparator;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * A {@link MAPElitesPopulation} that can be filled from many threads at once: the comparison with the current elite
+ * of a cell is guarded by one of a few striped locks, while the shared bookkeeping (filled cells, QD-score, counters)
+ * is updated under the archive monitor.
+ */
+public class ConcurrentMAPElitesPopulation<T> extends MAPElitesPopulation<T> {
+
+  private static final int N_OF_STRIPES = 64;
+
+  private final Object[] stripes;
+
+  public ConcurrentMAPElitesPopulation(List<Integer> size, List<Double> min, List<Double> max, Boolean maximize, Function<T, List<Double>> descriptor, PartialComparator<? super T> comparator, Function<T, Double> getFitness) {
+    this(new GridTessellation(size, min, max), maximize, descriptor, comparator, getFitness);
+  }
+
+  public ConcurrentMAPElitesPopulation(Tessellation tessellation, Boolean maximize, Function<T, List<Double>> descriptor, PartialComparator<? super T> comparator, Function<T, Double> getFitness) {
+    super(tessellation, maximize, descriptor, comparator, getFitness);
+    stripes = new Object[N_OF_STRIPES];
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Object();
+    }
+  }
+
+  @Override
+  public void add(T individual) {
+    // descriptor and fitness are computed out of any lock
+    int cell = index(individual);
+    double newFitness = getFitness.apply(individual);
+    boolean newCell;
+    double delta;
+    synchronized (stripes[cell % stripes.length]) {
+      newCell = archive[cell] == null;
+      if (!newCell && !(maximize ? newFitness >= fitness[cell] : newFitness <= fitness[cell])) {
+        synchronized (this) {
+          this.notAdded += 1;
+        }
+        return;
+      }
+      delta = newCell ? newFitness : newFitness - fitness[cell];
+      fitness[cell] = newFitness;
+      synchronized (this) {
+        archive[cell] = individual;
+        qdScore += delta;
+        if (newCell) {
+          occupied[filled] = cell;
+          positions[cell] = filled;
+          filled = filled + 1;
+        } else {
+          this.updated += 1;
+        }
+        this.lastAddedPerformance.add(individual);
+        this.added += 1;
+      }
+    }
+  }
+
+  @Override
+  public boolean remove(T t) {
+    int cell = index(t);
+    synchronized (stripes[cell % stripes.length]) {
+      synchronized (this) {
+        return super.remove(t);
+      }
+    }
+  }
+
+  @Override
+  public void addAll(Collection<T> individuals) {
+    // locks are always taken stripe first, hence the archive monitor cannot be held here while adding
+    clearLastAdded();
+    for (T individual : individuals) {
+      this.add(individual);
+    }
+  }
+
+  public synchronized void clearLastAdded() {
+    this.lastAddedPerformance = new ArrayList<>();
+  }
+
+  @Override
+  public synchronized Collection<T> all() {
+    return super.all();
+  }
+
+  @Override
+  public synchronized Collection<T> firsts() {
+    return super.firsts();
+  }
+
+  @Override
+  public synchronized Collection<T> lasts() {
+    return super.lasts();
+  }
+
+  @Override
+  public synchronized T sample(Random random) {
+    return super.sample(random);
+  }
+
+  @Override
+  public synchronized double coverage() {
+    return super.coverage();
+  }
+
+  @Override
+  public synchronized double qdScore() {
+    return super.qdScore();
+  }
+
+  @Override
+  public synchronized long getAdded() {
+    return super.getAdded();
+  }
+
+  @Override
+  public synchronized double getCrowedness(T individual) {
+    return super.getCrowedness(individual);
+  }
+
+}
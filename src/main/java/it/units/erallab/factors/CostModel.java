@@ -0,0 +1,210 @@
+package it.units.erallab.factors;
+
+import it.units.erallab.hmsrobots.core.objects.Robot;
+import it.units.erallab.hmsrobots.tasks.locomotion.Outcome;
+import it.units.erallab.hmsrobots.util.Grid;
+
+import java.io.Serializable;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+/**
+ * Wraps the training task, predicting the computation time of each episode from the body of the robot with a linear
+ * model fitted online on the past computation times, and letting at most {@code nOfThreads} episodes run at a time.
+ * Episodes waiting for a thread start from the most to the least expensive one; the tasks of a batch given to
+ * {@link #batched(Callable)} are all waited for (or their failure before the episode) before any of them starts, so
+ * that the whole batch is ordered. Robots are mapped once, by the tasks themselves, before waiting.
+ */
+public class CostModel implements Function<Robot<?>, Outcome>, Checkpointable {
+
+    private static class Waiting {
+        private final double cost;
+        private final long order;
+
+        private Waiting(double cost, long order) {
+            this.cost = cost;
+            this.order = order;
+        }
+    }
+
+    private static final int N_OF_FEATURES = 4;
+
+    private final Function<Robot<?>, Outcome> task;
+    private final int nOfThreads;
+    // recursive least squares estimate of the computation time as a linear function of the features
+    private final double[] weights;
+    private final double[][] covariance;
+    // most expensive first, then first come
+    private final PriorityQueue<Waiting> waiting;
+    private long arrivals;
+    private int running;
+    // tasks of the current batches not yet arrived at the episode
+    private int expected;
+    private final ThreadLocal<Boolean> inBatch;
+    private final ThreadLocal<Boolean> arrived;
+    private final ThreadLocal<long[]> waitedNanos;
+
+    public CostModel(Function<Robot<?>, Outcome> task, int nOfThreads) {
+        this.task = task;
+        this.nOfThreads = nOfThreads;
+        this.weights = new double[N_OF_FEATURES];
+        this.covariance = new double[N_OF_FEATURES][N_OF_FEATURES];
+        for (int i = 0; i < N_OF_FEATURES; ++i) {
+            this.covariance[i][i] = 1000.0D;
+        }
+        this.waiting = new PriorityQueue<>(Comparator.comparingDouble((Waiting w) -> -w.cost).thenComparingLong(w -> w.order));
+        this.inBatch = ThreadLocal.withInitial(() -> false);
+        this.arrived = ThreadLocal.withInitial(() -> false);
+        this.waitedNanos = ThreadLocal.withInitial(() -> new long[1]);
+    }
+
+    @Override
+    public Outcome apply(Robot<?> robot) {
+        double[] features = features(robot);
+        this.enter(this.predict(features));
+        Outcome outcome;
+        try {
+            outcome = this.task.apply(robot);
+        } finally {
+            this.leave();
+        }
+        this.update(features, outcome.getComputationTime());
+        return outcome;
+    }
+
+    // bias, number of voxels, width and height of the bounding box
+    private static double[] features(Robot<?> robot) {
+        Grid<?> voxels = robot.getVoxels();
+        int count = 0;
+        int minX = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int x = 0; x < voxels.getW(); ++x) {
+            for (int y = 0; y < voxels.getH(); ++y) {
+                if (voxels.get(x, y) != null) {
+                    count = count + 1;
+                    minX = Math.min(minX, x);
+                    maxX = Math.max(maxX, x);
+                    minY = Math.min(minY, y);
+                    maxY = Math.max(maxY, y);
+                }
+            }
+        }
+        return (count == 0) ? new double[]{1.0D, 0.0D, 0.0D, 0.0D} : new double[]{1.0D, count, maxX - minX + 1, maxY - minY + 1};
+    }
+
+    // to be called before submitting the tasks of a batch, each wrapped by this method
+    public synchronized void expect(int nOfTasks) {
+        this.expected = this.expected + nOfTasks;
+    }
+
+    public <T> Callable<T> batched(Callable<T> task) {
+        return () -> {
+            this.inBatch.set(true);
+            this.arrived.set(false);
+            try {
+                return task.call();
+            } finally {
+                // a task failing, or not evaluating, before the episode must not hold the batch
+                if (!this.arrived.get()) {
+                    this.arrive();
+                }
+                this.inBatch.set(false);
+            }
+        };
+    }
+
+    // time spent by the current thread waiting for the episode to start, since the last call
+    public long takeWaitedNanos() {
+        long[] nanos = this.waitedNanos.get();
+        long taken = nanos[0];
+        nanos[0] = 0L;
+        return taken;
+    }
+
+    private synchronized void arrive() {
+        if (this.inBatch.get() && !this.arrived.get()) {
+            this.arrived.set(true);
+            this.expected = this.expected - 1;
+            this.notifyAll();
+        }
+    }
+
+    private synchronized void enter(double cost) {
+        long start = System.nanoTime();
+        this.arrive();
+        Waiting w = new Waiting(cost, this.arrivals++);
+        this.waiting.add(w);
+        try {
+            while (this.expected > 0 || this.running >= this.nOfThreads || this.waiting.peek() != w) {
+                this.wait();
+            }
+        } catch (InterruptedException e) {
+            this.waiting.remove(w);
+            this.notifyAll();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an evaluation thread", e);
+        }
+        this.waiting.poll();
+        this.running = this.running + 1;
+        this.notifyAll();
+        this.waitedNanos.get()[0] += System.nanoTime() - start;
+    }
+
+    private synchronized void leave() {
+        this.running = this.running - 1;
+        this.notifyAll();
+    }
+
+    // weights, then covariance rows
+    @Override
+    public synchronized Serializable checkpoint() {
+        double[] state = new double[N_OF_FEATURES * (N_OF_FEATURES + 1)];
+        System.arraycopy(this.weights, 0, state, 0, N_OF_FEATURES);
+        for (int i = 0; i < N_OF_FEATURES; ++i) {
+            System.arraycopy(this.covariance[i], 0, state, N_OF_FEATURES * (i + 1), N_OF_FEATURES);
+        }
+        return state;
+    }
+
+    @Override
+    public synchronized void resume(Serializable checkpoint) {
+        double[] state = (double[]) checkpoint;
+        System.arraycopy(state, 0, this.weights, 0, N_OF_FEATURES);
+        for (int i = 0; i < N_OF_FEATURES; ++i) {
+            System.arraycopy(state, N_OF_FEATURES * (i + 1), this.covariance[i], 0, N_OF_FEATURES);
+        }
+    }
+
+    private synchronized double predict(double[] features) {
+        double prediction = 0.0D;
+        for (int i = 0; i < N_OF_FEATURES; ++i) {
+            prediction += this.weights[i] * features[i];
+        }
+        return prediction;
+    }
+
+    private synchronized void update(double[] features, double cost) {
+        double[] px = new double[N_OF_FEATURES];
+        double denominator = 1.0D;
+        for (int i = 0; i < N_OF_FEATURES; ++i) {
+            for (int j = 0; j < N_OF_FEATURES; ++j) {
+                px[i] += this.covariance[i][j] * features[j];
+            }
+            denominator += features[i] * px[i];
+        }
+        double error = cost - this.predict(features);
+        for (int i = 0; i < N_OF_FEATURES; ++i) {
+            this.weights[i] += px[i] / denominator * error;
+        }
+        for (int i = 0; i < N_OF_FEATURES; ++i) {
+            for (int j = 0; j < N_OF_FEATURES; ++j) {
+                this.covariance[i][j] -= px[i] * px[j] / denominator;
+            }
+        }
+    }
+
+}
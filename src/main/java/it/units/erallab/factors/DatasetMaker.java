@@ -59,6 +59,8 @@ public class DatasetMaker {
     int frameRate = i(a(args, "frameRate", "30"));
     String encoderName = a(args, "encoder", VideoUtils.EncoderFacility.FFMPEG_LARGE.name());
     SerializationUtils.Mode mode = SerializationUtils.Mode.valueOf(a(args, "deserializationMode", SerializationUtils.Mode.GZIPPED_JSON.name()).toUpperCase());
+    String genotypeStoreFileName = a(args, "genotypeStore", null);
+    GenotypeStore store = (genotypeStoreFileName == null) ? null : GenotypeStore.open(new File(genotypeStoreFileName));
     int count = 0;
     String terrainName;
     String outputFileName;
@@ -70,7 +72,7 @@ public class DatasetMaker {
         Grid<List<String>> rawGrid = Grid.create(
                 1,
                 1,
-                (x, y) -> List.of(record.get("serialized")));
+                (x, y) -> List.of(record.get((store == null) ? "serialized" : "genotype.hash")));
         //build named grid of robots
         Grid<Pair<String, Robot<?>>> namedRobotGrid = Grid.create(
                 rawGrid.getW(),
@@ -78,7 +80,7 @@ public class DatasetMaker {
                 (x, y) -> rawGrid.get(x, y).isEmpty() ? null : Pair.of(
                         "" + " " + "",
                         RobotUtils.buildRobotTransformation(transformationName, new Random(0))
-                                .apply(SerializationUtils.deserialize(rawGrid.get(x, y).get(0), Robot.class, mode))
+                                .apply(VideoMaker.robotOf(rawGrid.get(x, y).get(0), store, mode))
                 )
         );
         //prepare problem
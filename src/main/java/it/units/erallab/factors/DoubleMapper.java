@@ -6,114 +6,77 @@ import it.units.erallab.hmsrobots.core.objects.Robot;
 import it.units.erallab.hmsrobots.core.objects.SensingVoxel;
 import it.units.erallab.hmsrobots.core.sensors.Sensor;
 import it.units.erallab.hmsrobots.util.Grid;
-import it.units.erallab.hmsrobots.util.Utils;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
-import org.apache.commons.lang3.SerializationUtils;
+import java.util.function.Supplier;
 
 
 public class DoubleMapper extends RobotMapper {
 
+    private final int nOfInputs;
+    private final int nOfOutputs;
+    private final int nOfVoxelWeights;
+    private final GaussianMixtureDecoder gmmDecoder;
+
     public DoubleMapper(boolean heterogeneous, boolean direct, int width, int height, List<Sensor> sensors, int[] innerNeurons, int signals) {
-        super(heterogeneous, false, direct, width, height, sensors, innerNeurons, signals);
+        this(heterogeneous, direct, width, height, cloning(sensors), innerNeurons, signals);
+    }
+
+    public DoubleMapper(boolean heterogeneous, boolean direct, int width, int height, Supplier<List<Sensor>> sensorsFactory, int[] innerNeurons, int signals) {
+        super(heterogeneous, false, direct, width, height, sensorsFactory, innerNeurons, signals);
+        this.nOfInputs = this.signals * 4 + this.sensors.stream().mapToInt(s -> s.domains().length).sum();
+        this.nOfOutputs = this.signals * 4 + 1;
+        this.nOfVoxelWeights = MultiLayerPerceptron.countWeights(MultiLayerPerceptron.countNeurons(this.nOfInputs, this.innerNeurons, this.nOfOutputs));
+        this.gmmDecoder = new GaussianMixtureDecoder(width, height, NUM_GAUSSIANS, GAUSSIAN_THRESHOLD);
     }
 
     @Override
     public Robot<?> apply(List<Double> genotype) {
-        int nOfInputs = this.signals * 4 + this.sensors.stream().mapToInt(s -> s.domains().length).sum();
-        int nOfOutputs = this.signals * 4 + 1;
-        int nOfVoxelWeights = MultiLayerPerceptron.countWeights(MultiLayerPerceptron.countNeurons(nOfInputs, this.innerNeurons, nOfOutputs));
-        SensingVoxel sensingVoxel = new SensingVoxel(this.sensors);
-        Grid<SensingVoxel> body;
-        if (this.direct) {
-            body = this.createFromDirect(genotype);
-        }
-        else {
-            body = this.createFromGMM(genotype);
-        }
-        // create an empty grid
-        Grid<SensingVoxel> emptyBody = Grid.create(body.getW(), body.getH(), (x, y) -> null);
-        if (body.equals(emptyBody)) {
-            body.set(0, 0, SerializationUtils.clone(sensingVoxel)); // if the body is empty put a voxel (0,0)
+        // one single copy of the genotype, if it is not already backed by an array
+        double[] values = DoubleVector.of(genotype).values();
+        boolean[] occupancy = (this.direct) ? this.createFromDirect(values) : this.createFromGMM(values);
+        // pruned body, possibly shared with other genotypes having the same occupancy
+        int[] cells = this.bodyCells(occupancy);
+        // voxels are built only where needed, each with its own (stateful) sensors
+        Grid<SensingVoxel> body = Grid.create(this.width, this.height);
+        for (int c : cells) {
+            body.set(c % this.width, c / this.width, new SensingVoxel(this.sensorsFactory.get()));
         }
-        // retain largest connected component
-        body = Utils.gridLargestConnected(body, Objects::nonNull);
         // create a distributed controller
         DistributedSensing distributedSensing = new DistributedSensing(body, this.signals);
-        for (Grid.Entry<SensingVoxel> entry : body) {
+        int offset = getMorphologySize(this.direct, this.width, this.height);
+        // all the voxels share the same weights, which are copied by the perceptrons
+        double[] sharedWeights = (this.heterogeneous) ? null : Arrays.copyOfRange(values, offset, offset + this.nOfVoxelWeights);
+        for (int c : cells) {
             MultiLayerPerceptron mlp = new MultiLayerPerceptron(
                     MultiLayerPerceptron.ActivationFunction.TANH,
-                    nOfInputs,
+                    this.nOfInputs,
                     this.innerNeurons,
-                    nOfOutputs
+                    this.nOfOutputs
             );
-            // create an array of doubles from the list of the genotype
-            List<Double> w = genotype.subList(getMorphologySize(this.direct, this.width, this.height), genotype.size());
-            double[] weights = new double[w.size()];
-            for (int i = 0; i < weights.length; i++) {
-                weights[i] = w.get(i);
-            }
             if (this.heterogeneous) {  // different weights for every voxel
-                int from = entry.getX() * nOfVoxelWeights + entry.getY() * this.width * nOfVoxelWeights;
-                int to = from + nOfVoxelWeights;
-                double[] voxelWeights = Arrays.copyOfRange(weights, from, to);
-                mlp.setParams(voxelWeights);
+                int from = offset + c * this.nOfVoxelWeights;
+                mlp.setParams(Arrays.copyOfRange(values, from, from + this.nOfVoxelWeights));
             }
             else {
-                mlp.setParams(weights);
+                mlp.setParams(sharedWeights);
             }
-            distributedSensing.getFunctions().set(entry.getX(), entry.getY(), mlp);
+            distributedSensing.getFunctions().set(c % this.width, c / this.width, mlp);
         }
-        return new Robot<>(distributedSensing, SerializationUtils.clone(body));
+        return new Robot<>(distributedSensing, body);
     }
 
-    private Grid<SensingVoxel> createFromDirect(List<Double> genotype) {
-        SensingVoxel sensingVoxel = new SensingVoxel(this.sensors);
-        int c = 0;
-        Grid<SensingVoxel> body = Grid.create(this.width, this.height);
-        // fill voxels only for entries > 0.5
-        for (double entry : genotype) {
-            if (c < this.width * this.height) {
-                if (entry > DIRECT_THRESHOLD) {
-                    body.set(c % this.width, c / this.width, SerializationUtils.clone(sensingVoxel));
-                } else {
-                    body.set(c % this.width, c / this.width, null);
-                }
-                c = c + 1;
-            }
+    private boolean[] createFromDirect(double[] genotype) {
+        boolean[] occupancy = new boolean[this.width * this.height];
+        // fill voxels only for entries > DIRECT_THRESHOLD
+        for (int c = 0; c < occupancy.length; ++c) {
+            occupancy[c] = genotype[c] > DIRECT_THRESHOLD;
         }
-        return body;
+        return occupancy;
     }
 
-    private Grid<SensingVoxel> createFromGMM(List<Double> genotype) {
-        SensingVoxel sensingVoxel = new SensingVoxel(this.sensors);
-        Grid<SensingVoxel> body = Grid.create(this.width, this.height);
-        Grid<Double> values = Grid.create(this.width, this.height);
-        for (Grid.Entry<Double> entry : values) {
-            double value = 0.0;
-            for (int i = 0; i < NUM_GAUSSIANS; i++) {
-                double weight = genotype.get(5 * i);
-                double mx = genotype.get(1 + 5 * i);
-                double my = genotype.get(2 + 5 * i);
-                double sxx = genotype.get(3 + 5 * i);
-                double syy = genotype.get(4 + 5 * i);
-                // normalization
-                double x = (double) entry.getX() / (double) width;
-                double y = (double) entry.getY() / (double) height;
-                value += weight * (Math.exp(-0.5 * (Math.pow((x - mx), 2.0) / Math.pow(sxx, 2.0) + Math.pow((y - my), 2.0) / Math.pow(syy, 2.0))) / (2 * Math.PI * sxx * syy));
-            }
-            values.set(entry.getX(), entry.getY(), value);
-        }
-        // for each value of values if it is bigger tha a threshold puts a voxel in that position
-        for (Grid.Entry<Double> entry : values) {
-            if (entry.getValue() > GAUSSIAN_THRESHOLD) {
-                body.set(entry.getX(), entry.getY(), SerializationUtils.clone(sensingVoxel));
-            } else {
-                body.set(entry.getX(), entry.getY(), null);
-            }
-        }
-        return body;
+    private boolean[] createFromGMM(double[] genotype) {
+        return this.gmmDecoder.decode(genotype);
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,77 @@
+package it.units.erallab.factors;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+
+public class DoubleVector extends AbstractList<Double> implements RandomAccess, Serializable {
+
+    private final double[] values;
+
+    public DoubleVector(double[] values) {
+        this.values = values;
+    }
+
+    public DoubleVector(int size) {
+        this(new double[size]);
+    }
+
+    public static DoubleVector of(List<Double> list) {
+        if (list instanceof DoubleVector) {
+            return (DoubleVector) list;
+        }
+        double[] values = new double[list.size()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = list.get(i);
+        }
+        return new DoubleVector(values);
+    }
+
+    // backing array, not a copy: callers must not modify it
+    public double[] values() {
+        return this.values;
+    }
+
+    public double getDouble(int index) {
+        return this.values[index];
+    }
+
+    public void setDouble(int index, double value) {
+        this.values[index] = value;
+    }
+
+    @Override
+    public Double get(int index) {
+        return this.values[index];
+    }
+
+    @Override
+    public Double set(int index, Double element) {
+        double old = this.values[index];
+        this.values[index] = element;
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return this.values.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof DoubleVector) {
+            return Arrays.equals(this.values, ((DoubleVector) o).values);
+        }
+        return super.equals(o);
+    }
+
+    // same value as List.hashCode() on the boxed elements
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(this.values);
+    }
+
+}
@@ -0,0 +1,35 @@
+package it.units.erallab.factors;
+
+import it.units.malelab.jgea.core.IndependentFactory;
+
+import java.util.List;
+import java.util.Random;
+
+
+public class DoubleVectorFactory implements IndependentFactory<List<Double>> {
+
+  private final int size;
+  private final double min;
+  private final double max;
+
+  public DoubleVectorFactory(int size, double min, double max) {
+    this.size = size;
+    this.min = min;
+    this.max = max;
+  }
+
+  // same draws as a FixedLengthListFactory of UniformDoubleFactory
+  static void fill(double[] values, int from, int to, double min, double max, Random random) {
+    for (int i = from; i < to; ++i) {
+      values[i] = min + (max - min) * random.nextDouble();
+    }
+  }
+
+  @Override
+  public List<Double> build(Random random) {
+    double[] values = new double[size];
+    fill(values, 0, size, min, max, random);
+    return new DoubleVector(values);
+  }
+
+}
@@ -0,0 +1,27 @@
+package it.units.erallab.factors;
+
+import it.units.malelab.jgea.core.operator.Mutation;
+
+import java.util.List;
+import java.util.Random;
+
+
+public class DoubleVectorGaussianMutation implements Mutation<List<Double>> {
+
+  private final double sigma;
+
+  public DoubleVectorGaussianMutation(double sigma) {
+    this.sigma = sigma;
+  }
+
+  @Override
+  public List<Double> mutate(List<Double> parent, Random random) {
+    double[] values = DoubleVector.of(parent).values();
+    double[] child = new double[values.length];
+    for (int i = 0; i < values.length; ++i) {
+      child[i] = values[i] + random.nextGaussian() * sigma;
+    }
+    return new DoubleVector(child);
+  }
+
+}
@@ -0,0 +1,31 @@
+package it.units.erallab.factors;
+
+import com.google.common.collect.Range;
+import it.units.malelab.jgea.core.operator.Crossover;
+
+import java.util.List;
+import java.util.Random;
+
+
+public class DoubleVectorGeometricCrossover implements Crossover<List<Double>> {
+
+  private final double lower;
+  private final double upper;
+
+  public DoubleVectorGeometricCrossover(Range<Double> range) {
+    this.lower = range.lowerEndpoint();
+    this.upper = range.upperEndpoint();
+  }
+
+  @Override
+  public List<Double> recombine(List<Double> parent1, List<Double> parent2, Random random) {
+    double[] values1 = DoubleVector.of(parent1).values();
+    double[] values2 = DoubleVector.of(parent2).values();
+    double[] child = new double[Math.min(values1.length, values2.length)];
+    for (int i = 0; i < child.length; ++i) {
+      child[i] = values1[i] + (values2[i] - values1[i]) * (random.nextDouble() * (upper - lower) + lower);
+    }
+    return new DoubleVector(child);
+  }
+
+}
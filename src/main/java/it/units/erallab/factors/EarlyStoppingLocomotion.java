@@ -0,0 +1,167 @@
+package it.units.erallab.factors;
+
+import it.units.erallab.hmsrobots.core.objects.Ground;
+import it.units.erallab.hmsrobots.core.objects.Robot;
+import it.units.erallab.hmsrobots.core.objects.WorldObject;
+import it.units.erallab.hmsrobots.tasks.locomotion.Outcome;
+import it.units.erallab.hmsrobots.util.Grid;
+import org.dyn4j.dynamics.Settings;
+import org.dyn4j.dynamics.World;
+import org.dyn4j.geometry.Vector2;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * The episode of {@link it.units.erallab.hmsrobots.tasks.locomotion.Locomotion}, with the same placement of the robot
+ * and the same observations, checking after every step whether the robot is making progress. The outcome of a stopped
+ * robot is built from the observations collected up to the stop, hence the truncated episode is never simulated again;
+ * no snapshot listener is attached, hence no per-step snapshot is built. When streaming, observations are given to an
+ * {@link OutcomeAccumulator} instead of being collected, and the outcome is its {@link CompactOutcome}; with an
+ * infinite window and no median fraction, episodes are never stopped.
+ */
+public class EarlyStoppingLocomotion implements Function<Robot<?>, Outcome>, Checkpointable {
+
+    private static class Snapshot implements Serializable {
+        private final double referenceDistance;
+        private final double savedTime;
+        private final long stopped;
+
+        private Snapshot(double referenceDistance, double savedTime, long stopped) {
+            this.referenceDistance = referenceDistance;
+            this.savedTime = savedTime;
+            this.stopped = stopped;
+        }
+    }
+
+    // as in Locomotion
+    private static final double INITIAL_PLACEMENT_X_GAP = 1.0D;
+    private static final double INITIAL_PLACEMENT_Y_GAP = 1.0D;
+
+    private final double finalT;
+    private final double[][] terrain;
+    private final Settings settings;
+    private final double window;
+    private final double minProgress;
+    private final double medianFraction;
+    private final boolean streaming;
+    private final double spectrumMinFrequency;
+    private final double spectrumMaxFrequency;
+    private final int spectrumSize;
+    private volatile double referenceDistance;
+    private final DoubleAdder savedTime;
+    private final LongAdder stopped;
+
+    public EarlyStoppingLocomotion(double finalT, double[][] terrain, Settings settings, double window, double minProgress, double medianFraction) {
+        this(finalT, terrain, settings, window, minProgress, medianFraction, false, 0.0D, 0.0D, 0);
+    }
+
+    public EarlyStoppingLocomotion(double finalT, double[][] terrain, Settings settings, double window, double minProgress, double medianFraction, boolean streaming, double spectrumMinFrequency, double spectrumMaxFrequency, int spectrumSize) {
+        this.finalT = finalT;
+        this.terrain = terrain;
+        this.settings = settings;
+        this.window = window;
+        this.minProgress = minProgress;
+        this.medianFraction = medianFraction;
+        this.streaming = streaming;
+        this.spectrumMinFrequency = spectrumMinFrequency;
+        this.spectrumMaxFrequency = spectrumMaxFrequency;
+        this.spectrumSize = spectrumSize;
+        this.referenceDistance = Double.NaN;
+        this.savedTime = new DoubleAdder();
+        this.stopped = new LongAdder();
+    }
+
+    @Override
+    public Outcome apply(Robot<?> robot) {
+        long start = System.nanoTime();
+        World world = new World();
+        world.setSettings(this.settings);
+        Ground ground = new Ground(this.terrain[0], this.terrain[1]);
+        ground.addTo(world);
+        robot.reset();
+        // placement as in Locomotion: on the left of the terrain, slightly above the ground
+        robot.translate(new Vector2(this.terrain[0][1] + INITIAL_PLACEMENT_X_GAP - robot.boundingBox().min.x, 0.0D));
+        double minYGap = robot.getVoxels().values().stream()
+                .filter(Objects::nonNull)
+                .mapToDouble(v -> v.boundingBox().min.y - ground.yAt(v.getCenter().x))
+                .min().orElse(0.0D);
+        robot.translate(new Vector2(0.0D, INITIAL_PLACEMENT_Y_GAP - minYGap));
+        robot.addTo(world);
+        List<WorldObject> worldObjects = List.of(ground, robot);
+        SortedMap<Double, Outcome.Observation> observations = new TreeMap<>();
+        OutcomeAccumulator accumulator = this.streaming ? new OutcomeAccumulator(this.settings.getStepFrequency(), this.spectrumMinFrequency, this.spectrumMaxFrequency, this.spectrumSize) : null;
+        double startX = robot.getCenter().x;
+        double anchorX = startX;
+        double anchorT = 0.0D;
+        double t = 0.0D;
+        while (t < this.finalT) {
+            double stepT = t + this.settings.getStepFrequency();
+            world.step(1);
+            worldObjects.forEach(o -> o.act(stepT));
+            t = stepT;
+            double x = robot.getCenter().x;
+            Outcome.Observation observation = new Outcome.Observation(
+                    Grid.create(robot.getVoxels(), v -> (v == null) ? null : v.getVoxelPoly()),
+                    ground.yAt(x),
+                    (System.nanoTime() - start) / 1e9
+            );
+            if (accumulator != null) {
+                accumulator.add(t, observation, x, robot.getCenter().y);
+            } else {
+                observations.put(t, observation);
+            }
+            if (x - anchorX > this.minProgress) {
+                anchorX = x;
+                anchorT = t;
+            }
+            double reference = this.referenceDistance;
+            if ((t - anchorT > this.window) || (t > this.window && !Double.isNaN(reference) && (x - startX) / t * this.finalT < this.medianFraction * reference)) {
+                this.stopped.increment();
+                this.savedTime.add(this.finalT - t);
+                break;
+            }
+        }
+        return (accumulator != null) ? accumulator.outcome() : new Outcome(observations);
+    }
+
+    public void setReferenceDistance(double referenceDistance) {
+        this.referenceDistance = referenceDistance;
+    }
+
+    public double getReferenceDistance() {
+        return this.referenceDistance;
+    }
+
+    // the totals too, or the first deltas after a resume would count the whole interrupted run
+    @Override
+    public Serializable checkpoint() {
+        return new Snapshot(this.referenceDistance, this.savedTime.sum(), this.stopped.sum());
+    }
+
+    @Override
+    public void resume(Serializable checkpoint) {
+        Snapshot snapshot = (Snapshot) checkpoint;
+        this.referenceDistance = snapshot.referenceDistance;
+        this.savedTime.reset();
+        this.savedTime.add(snapshot.savedTime);
+        this.stopped.reset();
+        this.stopped.add(snapshot.stopped);
+    }
+
+    // totals since the start, per event differences are computed by the listeners
+    public double getSavedTime() {
+        return this.savedTime.sum();
+    }
+
+    public long getStopped() {
+        return this.stopped.sum();
+    }
+
+}
@@ -0,0 +1,115 @@
+package it.units.erallab.factors;
+
+import it.units.erallab.hmsrobots.core.objects.Robot;
+import it.units.erallab.hmsrobots.tasks.locomotion.Locomotion;
+import it.units.erallab.hmsrobots.tasks.locomotion.Outcome;
+import org.dyn4j.dynamics.Settings;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static it.units.malelab.jgea.core.util.Args.*;
+
+/**
+ * Evaluates genotypes sent by a {@link WorkerFleet} over a localhost socket, with the mapper and the physics settings of
+ * the coordinator, and sends back the {@link CompactOutcome} summary of each episode. Episodes are never stopped early.
+ */
+public class EvaluationWorker {
+
+  private static final Logger L = Logger.getLogger(EvaluationWorker.class.getName());
+
+  public static void main(String[] args) throws IOException {
+    String representation = a(args, "representation", null);
+    String size = a(args, "size", "5x5");
+    String sensorsConfig = a(args, "sensors", "vel-area-touch");
+    int signals = i(a(args, "signals", "1"));
+    String terrain = a(args, "terrain", "flat");
+    double episodeTime = d(a(args, "episodeTime", "30"));
+    double spectrumMinFrequency = d(a(args, "spectrumMinFrequency", "0"));
+    double spectrumMaxFrequency = d(a(args, "spectrumMaxFrequency", "10"));
+    int spectrumSize = i(a(args, "spectrumSize", "100"));
+    int width = Integer.parseInt(size.split("x")[0]);
+    int height = Integer.parseInt(size.split("x")[1]);
+    RobotMapper mapper = RobotMapper.createMapper(representation, width, height, sensorsConfig, innerNeurons(args), signals);
+    Locomotion locomotion = new Locomotion(episodeTime, Locomotion.createTerrain(terrain), settings(args));
+    try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+      // the coordinator reads the port from the first line of the standard output
+      System.out.println(serverSocket.getLocalPort());
+      System.out.flush();
+      try (Socket socket = serverSocket.accept()) {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        while (true) {
+          int n;
+          try {
+            n = in.readInt();
+          } catch (EOFException e) {
+            break;
+          }
+          if (n < 0) {
+            break;
+          }
+          double[] genotype = new double[n];
+          for (int k = 0; k < n; ++k) {
+            genotype[k] = in.readDouble();
+          }
+          Robot<?> robot = mapper.apply(new DoubleVector(genotype));
+          Outcome outcome = locomotion.apply(robot);
+          ((CompactOutcome) CompactOutcome.of(outcome, spectrumMinFrequency, spectrumMaxFrequency, spectrumSize)).write(out);
+          out.flush();
+        }
+      }
+    } catch (IOException e) {
+      L.severe(String.format("Worker stopped due to %s", e));
+      throw e;
+    }
+  }
+
+  // the sizes of the hidden layers, as a single argument without spaces (arguments cannot have empty values)
+  public static String innerNeuronsArg(int[] innerNeurons) {
+    return "innerNeurons=" + ((innerNeurons.length == 0) ? "none" : Arrays.stream(innerNeurons).mapToObj(String::valueOf).collect(Collectors.joining(",")));
+  }
+
+  public static int[] innerNeurons(String[] args) {
+    String value = a(args, "innerNeurons", "none");
+    return value.equals("none") ? new int[0] : Arrays.stream(value.split(",")).mapToInt(Integer::parseInt).toArray();
+  }
+
+  // the physics settings of the coordinator, as arguments of the worker
+  public static List<String> settingsArgs(Settings settings) {
+    return List.of(
+        "stepFrequency=" + settings.getStepFrequency(),
+        "velocityIterations=" + settings.getVelocityConstraintSolverIterations(),
+        "positionIterations=" + settings.getPositionConstraintSolverIterations(),
+        "autoSleeping=" + settings.isAutoSleepingEnabled(),
+        "maximumTranslation=" + settings.getMaximumTranslation(),
+        "maximumRotation=" + settings.getMaximumRotation(),
+        "linearTolerance=" + settings.getLinearTolerance(),
+        "angularTolerance=" + settings.getAngularTolerance(),
+        "restitutionVelocity=" + settings.getRestitutionVelocity(),
+        "baumgarte=" + settings.getBaumgarte()
+    );
+  }
+
+  private static Settings settings(String[] args) {
+    Settings settings = new Settings();
+    settings.setStepFrequency(d(a(args, "stepFrequency", String.valueOf(settings.getStepFrequency()))));
+    settings.setVelocityConstraintSolverIterations(i(a(args, "velocityIterations", String.valueOf(settings.getVelocityConstraintSolverIterations()))));
+    settings.setPositionConstraintSolverIterations(i(a(args, "positionIterations", String.valueOf(settings.getPositionConstraintSolverIterations()))));
+    settings.setAutoSleepingEnabled(Boolean.parseBoolean(a(args, "autoSleeping", String.valueOf(settings.isAutoSleepingEnabled()))));
+    settings.setMaximumTranslation(d(a(args, "maximumTranslation", String.valueOf(settings.getMaximumTranslation()))));
+    settings.setMaximumRotation(d(a(args, "maximumRotation", String.valueOf(settings.getMaximumRotation()))));
+    settings.setLinearTolerance(d(a(args, "linearTolerance", String.valueOf(settings.getLinearTolerance()))));
+    settings.setAngularTolerance(d(a(args, "angularTolerance", String.valueOf(settings.getAngularTolerance()))));
+    settings.setRestitutionVelocity(d(a(args, "restitutionVelocity", String.valueOf(settings.getRestitutionVelocity()))));
+    settings.setBaumgarte(d(a(args, "baumgarte", String.valueOf(settings.getBaumgarte()))));
+    return settings;
+  }
+
+}
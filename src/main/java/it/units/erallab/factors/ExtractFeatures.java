@@ -90,4 +90,9 @@ public class ExtractFeatures {
         return (double) nVoxels / nConvexHull;
     }
 
+    // cheap behaviour descriptor, computed on the body only: elongation, compactness and number of voxels
+    public static List<Double> shapeDescriptor(Grid<Boolean> posture) {
+        return List.of(shapeElongation(posture, 8), shapeCompactness(posture), (double) posture.count(e -> e));
+    }
+
 }
@@ -1,8 +1,6 @@
 package it.units.erallab.factors;
 
 import it.units.malelab.jgea.core.IndependentFactory;
-import it.units.malelab.jgea.representation.sequence.FixedLengthListFactory;
-import it.units.malelab.jgea.representation.sequence.numeric.UniformDoubleFactory;
 
 import java.util.List;
 import java.util.Random;
@@ -10,22 +8,21 @@ import java.util.Random;
 
 public class GaussianFactory implements IndependentFactory<List<Double>> {
 
-  private final FixedLengthListFactory<Double> controllerFactory;
-  private final FixedLengthListFactory<Double> bodyFactory;
+  private final int genotypeSize;
   private static final int NUM_GAUSSIANS = 5;
 
   public GaussianFactory(int genotypeSize) {
-    this.controllerFactory = new FixedLengthListFactory<>(genotypeSize - (NUM_GAUSSIANS * 5), new UniformDoubleFactory(-1d, 1d));
-    this.bodyFactory = new FixedLengthListFactory<>(NUM_GAUSSIANS * 5, new UniformDoubleFactory(0d, 1d));
+    this.genotypeSize = genotypeSize;
   }
 
   @Override
   public List<Double> build(Random random) {
+    double[] genotype = new double[genotypeSize];
     // weights of the body
-    List<Double> genotype = this.bodyFactory.build(random);
+    DoubleVectorFactory.fill(genotype, 0, NUM_GAUSSIANS * 5, 0d, 1d, random);
     // weights of the neural network
-    genotype.addAll(this.controllerFactory.build(random));
-    return genotype;
+    DoubleVectorFactory.fill(genotype, NUM_GAUSSIANS * 5, genotypeSize, -1d, 1d, random);
+    return new DoubleVector(genotype);
   }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,63 @@
+package it.units.erallab.factors;
+
+
+public class GaussianMixtureDecoder {
+
+    private final int nOfGaussians;
+    private final double threshold;
+    // normalized coordinates of every cell, row by row
+    private final double[] xs;
+    private final double[] ys;
+    // values and exponents of every cell, reused by all the decodings of a mapping thread
+    private final ThreadLocal<double[][]> scratch;
+
+    public GaussianMixtureDecoder(int width, int height, int nOfGaussians, double threshold) {
+        this.nOfGaussians = nOfGaussians;
+        this.threshold = threshold;
+        this.xs = new double[width * height];
+        this.ys = new double[width * height];
+        for (int c = 0; c < this.xs.length; ++c) {
+            this.xs[c] = (double) (c % width) / (double) width;
+            this.ys[c] = (double) (c / width) / (double) height;
+        }
+        this.scratch = ThreadLocal.withInitial(() -> new double[2][this.xs.length]);
+    }
+
+    public boolean[] decode(double[] genotype) {
+        boolean[] occupancy = new boolean[this.xs.length];
+        double[][] buffers = this.scratch.get();
+        this.decode(genotype, occupancy, buffers[0], buffers[1]);
+        return occupancy;
+    }
+
+    // same operations, in the same order, as the per-cell formula, hence the same bits: Math.pow(v, 2.0) is exactly v * v
+    private void decode(double[] genotype, boolean[] occupancy, double[] values, double[] exponents) {
+        int n = this.xs.length;
+        for (int c = 0; c < n; ++c) {
+            values[c] = 0.0;
+        }
+        for (int i = 0; i < this.nOfGaussians; ++i) {
+            double weight = genotype[5 * i];
+            double mx = genotype[1 + 5 * i];
+            double my = genotype[2 + 5 * i];
+            double sxx = genotype[3 + 5 * i];
+            double syy = genotype[4 + 5 * i];
+            double sxx2 = sxx * sxx;
+            double syy2 = syy * syy;
+            double normalization = 2 * Math.PI * sxx * syy;
+            // branch-free primitive loop, left to the JIT for vectorization
+            for (int c = 0; c < n; ++c) {
+                double dx = this.xs[c] - mx;
+                double dy = this.ys[c] - my;
+                exponents[c] = -0.5 * (dx * dx / sxx2 + dy * dy / syy2);
+            }
+            for (int c = 0; c < n; ++c) {
+                values[c] += weight * (Math.exp(exponents[c]) / normalization);
+            }
+        }
+        for (int c = 0; c < n; ++c) {
+            occupancy[c] = values[c] > this.threshold;
+        }
+    }
+
+}
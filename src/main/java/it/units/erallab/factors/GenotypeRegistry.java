@@ -0,0 +1,34 @@
+package it.units.erallab.factors;
+
+import it.units.erallab.hmsrobots.core.objects.Robot;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Function;
+
+
+public class GenotypeRegistry implements Function<List<Double>, Robot<?>> {
+
+    private final Function<List<Double>, Robot<?>> mapper;
+    // robots are weakly referenced, entries go away together with the individuals holding them
+    private final Map<Robot<?>, List<Double>> genotypes;
+
+    public GenotypeRegistry(Function<List<Double>, Robot<?>> mapper) {
+        this.mapper = mapper;
+        this.genotypes = Collections.synchronizedMap(new WeakHashMap<>());
+    }
+
+    @Override
+    public Robot<?> apply(List<Double> genotype) {
+        Robot<?> robot = this.mapper.apply(genotype);
+        this.genotypes.put(robot, genotype);
+        return robot;
+    }
+
+    public List<Double> genotypeOf(Robot<?> robot) {
+        return this.genotypes.get(robot);
+    }
+
+}
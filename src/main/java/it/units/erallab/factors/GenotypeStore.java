@@ -0,0 +1,175 @@
+package it.units.erallab.factors;
+
+import com.google.common.collect.MapMaker;
+import it.units.erallab.hmsrobots.core.objects.Robot;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+
+import static it.units.malelab.jgea.core.util.Args.*;
+
+/**
+ * An append-only, content-addressed file of genotypes: each distinct genotype is written once, as flat doubles,
+ * under a 64 bits hash of its values, so that logs only need to carry the hash. The file starts with the arguments
+ * of the mapper, hence robots can be rebuilt from a hash with {@link #robot(String)}. A genotype whose hash is already
+ * in the file is compared with the stored one, and a collision fails the put; genotype objects already put are not
+ * compared again.
+ */
+public class GenotypeStore implements Closeable {
+
+    private static final int MAGIC = 0x56535247;
+
+    private final File file;
+    private final List<String> mapperArgs;
+    private final Map<Long, Long> offsets;
+    // hashes of the genotype objects already put, weakly and by identity
+    private final ConcurrentMap<List<Double>, Long> known;
+    private DataOutputStream out;
+    private long position;
+    private RandomAccessFile in;
+    private RobotMapper mapper;
+
+    private GenotypeStore(File file, List<String> mapperArgs) {
+        this.file = file;
+        this.mapperArgs = mapperArgs;
+        this.offsets = new HashMap<>();
+        this.known = new MapMaker().weakKeys().makeMap();
+    }
+
+    // the args are the ones of EvaluationWorker: representation, size, sensors, signals and inner neurons
+    public static GenotypeStore create(File file, List<String> mapperArgs) throws IOException {
+        GenotypeStore store = new GenotypeStore(file, mapperArgs);
+        store.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        store.out.writeInt(MAGIC);
+        byte[] header = String.join(" ", mapperArgs).getBytes(StandardCharsets.UTF_8);
+        store.out.writeInt(header.length);
+        store.out.write(header);
+        store.out.flush();
+        store.position = 8 + header.length;
+        store.in = new RandomAccessFile(file, "r");
+        return store;
+    }
+
+    public static GenotypeStore open(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(String.format("%s is not a genotype store", file));
+            }
+            byte[] header = new byte[in.readInt()];
+            in.readFully(header);
+            GenotypeStore store = new GenotypeStore(file, Arrays.asList(new String(header, StandardCharsets.UTF_8).split(" ")));
+            long position = 8 + header.length;
+            while (true) {
+                long hash;
+                int size;
+                try {
+                    hash = in.readLong();
+                    size = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                store.offsets.put(hash, position);
+                long toSkip = 8L * size;
+                // a truncated last record is ignored
+                if (in.skip(toSkip) < toSkip) {
+                    store.offsets.remove(hash);
+                    break;
+                }
+                position = position + 12 + toSkip;
+            }
+            store.in = new RandomAccessFile(file, "r");
+            return store;
+        }
+    }
+
+    public static long hash(double[] values) {
+        long h = 0xcbf29ce484222325L ^ values.length;
+        for (double v : values) {
+            h = (h ^ Double.doubleToLongBits(v)) * 0x100000001b3L;
+            h = h ^ (h >>> 29);
+        }
+        return h ^ (h >>> 32);
+    }
+
+    public static String toString(long hash) {
+        return String.format("%016x", hash);
+    }
+
+    // writes the genotype, if not already there, and returns its hash
+    public String put(List<Double> genotype) {
+        Long knownHash = known.get(genotype);
+        if (knownHash != null) {
+            return toString(knownHash);
+        }
+        double[] values = DoubleVector.of(genotype).values();
+        long hash = hash(values);
+        synchronized (this) {
+            try {
+                Long offset = offsets.get(hash);
+                if (offset == null) {
+                    out.writeLong(hash);
+                    out.writeInt(values.length);
+                    for (double v : values) {
+                        out.writeDouble(v);
+                    }
+                    out.flush();
+                    offsets.put(hash, position);
+                    position = position + 12 + 8L * values.length;
+                } else if (!Arrays.equals(values, read(offset))) {
+                    throw new IllegalStateException(String.format("Different genotypes with the same hash %s in %s", toString(hash), file));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        known.put(genotype, hash);
+        return toString(hash);
+    }
+
+    public synchronized List<Double> get(String hash) throws IOException {
+        Long offset = offsets.get(Long.parseUnsignedLong(hash, 16));
+        if (offset == null) {
+            throw new IllegalArgumentException(String.format("Unknown genotype hash %s in %s", hash, file));
+        }
+        return new DoubleVector(read(offset));
+    }
+
+    private double[] read(long offset) throws IOException {
+        in.seek(offset + 8);
+        double[] values = new double[in.readInt()];
+        byte[] bytes = new byte[8 * values.length];
+        in.readFully(bytes);
+        ByteBuffer.wrap(bytes).asDoubleBuffer().get(values);
+        return values;
+    }
+
+    public Robot<?> robot(String hash) throws IOException {
+        if (mapper == null) {
+            String[] args = mapperArgs.toArray(String[]::new);
+            String size = a(args, "size", "5x5");
+            mapper = RobotMapper.createMapper(
+                    a(args, "representation", null),
+                    Integer.parseInt(size.split("x")[0]),
+                    Integer.parseInt(size.split("x")[1]),
+                    a(args, "sensors", "vel-area-touch"),
+                    EvaluationWorker.innerNeurons(args),
+                    i(a(args, "signals", "1"))
+            );
+        }
+        return mapper.apply(get(hash));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+        }
+        if (in != null) {
+            in.close();
+        }
+    }
+
+}
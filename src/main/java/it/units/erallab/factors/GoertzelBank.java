@@ -0,0 +1,91 @@
+package it.units.erallab.factors;
+
+/**
+ * The magnitudes of the discrete-time Fourier transform of a uniformly sampled signal at a fixed set of frequencies,
+ * updated sample by sample with one Goertzel filter per frequency: memory does not grow with the number of samples.
+ * Bins split [minFrequency, maxFrequency] evenly and are evaluated at their center; the mean of the signal, known only
+ * at the end, is removed from the transform in closed form.
+ */
+public class GoertzelBank {
+
+    private final double[] frequencies;
+    private final double[] omegas;
+    private final double[] coefficients;
+    private final double[] s1;
+    private final double[] s2;
+    private double first;
+    private double sum;
+    private int n;
+
+    public GoertzelBank(double samplingPeriod, double minFrequency, double maxFrequency, int nBins) {
+        this.frequencies = new double[nBins];
+        this.omegas = new double[nBins];
+        this.coefficients = new double[nBins];
+        for (int b = 0; b < nBins; ++b) {
+            frequencies[b] = minFrequency + (b + 0.5D) * (maxFrequency - minFrequency) / nBins;
+            omegas[b] = 2.0D * Math.PI * frequencies[b] * samplingPeriod;
+            coefficients[b] = 2.0D * Math.cos(omegas[b]);
+        }
+        this.s1 = new double[nBins];
+        this.s2 = new double[nBins];
+    }
+
+    public void add(double value) {
+        // relative to the first sample, as positions along x grow with the distance
+        if (n == 0) {
+            first = value;
+        }
+        double v = value - first;
+        for (int b = 0; b < s1.length; ++b) {
+            double s0 = v + coefficients[b] * s1[b] - s2[b];
+            s2[b] = s1[b];
+            s1[b] = s0;
+        }
+        sum = sum + v;
+        n = n + 1;
+    }
+
+    public double[] getFrequencies() {
+        return frequencies.clone();
+    }
+
+    // |sum_k (x_k - mean) e^(-i omega k)| / n for each bin
+    public double[] strengths() {
+        double[] strengths = new double[s1.length];
+        if (n == 0) {
+            return strengths;
+        }
+        double mean = sum / n;
+        for (int b = 0; b < s1.length; ++b) {
+            double omega = omegas[b];
+            double cos = Math.cos(omega);
+            double sin = Math.sin(omega);
+            // the filter output is the transform rotated by omega (n - 1)
+            double yRe = s1[b] - cos * s2[b];
+            double yIm = sin * s2[b];
+            double phase = -omega * (n - 1);
+            double xRe = yRe * Math.cos(phase) - yIm * Math.sin(phase);
+            double xIm = yRe * Math.sin(phase) + yIm * Math.cos(phase);
+            // transform of a constant 1 signal: sum_k e^(-i omega k) = (1 - e^(-i omega n)) / (1 - e^(-i omega))
+            double gRe;
+            double gIm;
+            double dRe = 1.0D - cos;
+            double dIm = sin;
+            double d = dRe * dRe + dIm * dIm;
+            if (d < 1e-24) {
+                gRe = n;
+                gIm = 0.0D;
+            } else {
+                double nRe = 1.0D - Math.cos(omega * n);
+                double nIm = Math.sin(omega * n);
+                gRe = (nRe * dRe + nIm * dIm) / d;
+                gIm = (nIm * dRe - nRe * dIm) / d;
+            }
+            double re = xRe - mean * gRe;
+            double im = xIm - mean * gIm;
+            strengths[b] = Math.sqrt(re * re + im * im) / n;
+        }
+        return strengths;
+    }
+
+}
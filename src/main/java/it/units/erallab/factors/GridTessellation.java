@@ -0,0 +1,98 @@
+package it.units.erallab.factors;
+
+import java.util.List;
+
+/**
+ * A regular grid over a box of the descriptor space; cells are linearized with the first dimension varying fastest.
+ */
+public class GridTessellation implements Tessellation {
+
+  private final double[] threshold;
+  private final int[] size;
+  private final int[] strides;
+  private final double[] min;
+  private final double[] max;
+  private final int nOfCells;
+  // offsets of the 3^d - 1 neighbours of a cell, along each dimension
+  private final int[][] neighbourhood;
+
+  public GridTessellation(List<Integer> size, List<Double> min, List<Double> max) {
+    int dimensions = size.size();
+    this.size = new int[dimensions];
+    this.strides = new int[dimensions];
+    this.min = new double[dimensions];
+    this.max = new double[dimensions];
+    this.threshold = new double[dimensions];
+    long cells = 1;
+    for (int i = 0; i < dimensions; i++) {
+      this.size[i] = size.get(i);
+      this.min[i] = min.get(i);
+      this.max[i] = max.get(i);
+      this.threshold[i] = (this.max[i] - this.min[i]) / this.size[i];
+      this.strides[i] = (int) cells;
+      cells = cells * this.size[i];
+      if (cells > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException(String.format("Too many cells in a %s grid", size));
+      }
+    }
+    nOfCells = (int) cells;
+    neighbourhood = new int[(int) Math.pow(3, dimensions) - 1][dimensions];
+    int k = 0;
+    for (int n = 0; n < Math.pow(3, dimensions); n++) {
+      int[] offset = new int[dimensions];
+      int code = n;
+      boolean self = true;
+      for (int i = 0; i < dimensions; i++) {
+        offset[i] = code % 3 - 1;
+        code = code / 3;
+        self = self && offset[i] == 0;
+      }
+      if (!self) {
+        neighbourhood[k] = offset;
+        k = k + 1;
+      }
+    }
+  }
+
+  @Override
+  public int size() {
+    return nOfCells;
+  }
+
+  @Override
+  public int cell(List<Double> descriptor) {
+    int cell = 0;
+    for (int i = 0; i < threshold.length; i++) {
+      double value = descriptor.get(i);
+      int index;
+      if (value < min[i]) {
+        index = 0;
+      } else if (value >= max[i]) {
+        index = size[i] - 1;
+      } else {
+        index = Math.min((int) ((value - min[i]) / threshold[i]), size[i] - 1);
+      }
+      cell = cell + index * strides[i];
+    }
+    return cell;
+  }
+
+  // neighbours out of the grid are reported as -1
+  @Override
+  public int[] neighbours(int cell) {
+    int[] neighbours = new int[neighbourhood.length];
+    for (int n = 0; n < neighbourhood.length; n++) {
+      int[] offset = neighbourhood[n];
+      int neighbour = cell;
+      boolean inside = true;
+      for (int i = 0; i < offset.length && inside; i++) {
+        int index = (cell / strides[i]) % size[i] + offset[i];
+        inside = index >= 0 && index < size[i];
+        neighbour = neighbour + offset[i] * strides[i];
+      }
+      neighbours[n] = inside ? neighbour : -1;
+    }
+    return neighbours;
+  }
+
+}
@@ -0,0 +1,135 @@
+package it.units.erallab.factors;
+
+import java.util.PriorityQueue;
+
+/**
+ * A static k-d tree over a set of points, for nearest neighbour queries in the Euclidean distance. The tree is
+ * implicit: the node of the range [from, to) of the permutation is the point at its middle.
+ */
+public class KdTree {
+
+  private final double[][] points;
+  private final int[] order;
+  private final int[] splitDimensions;
+
+  public KdTree(double[][] points) {
+    this.points = points;
+    this.order = new int[points.length];
+    this.splitDimensions = new int[points.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    build(0, order.length);
+  }
+
+  private void build(int from, int to) {
+    if (to - from <= 1) {
+      return;
+    }
+    // split along the dimension with the widest spread
+    int dimension = 0;
+    double widest = -1;
+    for (int d = 0; d < points[order[from]].length; d++) {
+      double min = Double.POSITIVE_INFINITY;
+      double max = Double.NEGATIVE_INFINITY;
+      for (int i = from; i < to; i++) {
+        min = Math.min(min, points[order[i]][d]);
+        max = Math.max(max, points[order[i]][d]);
+      }
+      if (max - min > widest) {
+        widest = max - min;
+        dimension = d;
+      }
+    }
+    int mid = (from + to) >>> 1;
+    select(from, to - 1, mid, dimension);
+    splitDimensions[mid] = dimension;
+    build(from, mid);
+    build(mid + 1, to);
+  }
+
+  // quickselect: after the call, order[k] is the point that would be there if [left, right] were sorted on dimension
+  private void select(int left, int right, int k, int dimension) {
+    while (left < right) {
+      double pivot = points[order[(left + right) >>> 1]][dimension];
+      int i = left;
+      int j = right;
+      while (i <= j) {
+        while (points[order[i]][dimension] < pivot) {
+          i++;
+        }
+        while (points[order[j]][dimension] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          int tmp = order[i];
+          order[i] = order[j];
+          order[j] = tmp;
+          i++;
+          j--;
+        }
+      }
+      if (k <= j) {
+        right = j;
+      } else if (k >= i) {
+        left = i;
+      } else {
+        return;
+      }
+    }
+  }
+
+  public int nearest(double[] query) {
+    return nearest(query, 1)[0];
+  }
+
+  // the indexes of the k points closest to query, closest first
+  public int[] nearest(double[] query, int k) {
+    PriorityQueue<double[]> best = new PriorityQueue<>(k, (b1, b2) -> Double.compare(b2[0], b1[0]));
+    search(0, order.length, query, k, best);
+    int[] nearest = new int[best.size()];
+    for (int i = nearest.length - 1; i >= 0; i--) {
+      nearest[i] = (int) best.poll()[1];
+    }
+    return nearest;
+  }
+
+  private void search(int from, int to, double[] query, int k, PriorityQueue<double[]> best) {
+    if (from >= to) {
+      return;
+    }
+    int mid = (from + to) >>> 1;
+    int point = order[mid];
+    double distance = squaredDistance(points[point], query);
+    if (best.size() < k) {
+      best.add(new double[]{distance, point});
+    } else if (distance < best.peek()[0]) {
+      best.poll();
+      best.add(new double[]{distance, point});
+    }
+    if (to - from == 1) {
+      return;
+    }
+    double diff = query[splitDimensions[mid]] - points[point][splitDimensions[mid]];
+    if (diff < 0) {
+      search(from, mid, query, k, best);
+      if (best.size() < k || diff * diff < best.peek()[0]) {
+        search(mid + 1, to, query, k, best);
+      }
+    } else {
+      search(mid + 1, to, query, k, best);
+      if (best.size() < k || diff * diff < best.peek()[0]) {
+        search(from, mid, query, k, best);
+      }
+    }
+  }
+
+  private static double squaredDistance(double[] p1, double[] p2) {
+    double d = 0;
+    for (int i = 0; i < p1.length; i++) {
+      d = d + (p1[i] - p2[i]) * (p1[i] - p2[i]);
+    }
+    return d;
+  }
+
+}
@@ -38,13 +38,34 @@ public class MAPElitesEvolver<S, F> extends AbstractIterativeEvolver<List<Double
                           Factory<List<Double>> genotypeFactory,
                           PartialComparator<? super Individual<List<Double>, S, F>> individualComparator,
                           Mutation<List<Double>> mutation, int populationSize, int batch_size, Function<Individual< List<Double>,S,F>, Double> helper) {
+    this(new GridTessellation(size, min, max), descriptor, solutionMapper, genotypeFactory, individualComparator, mutation, populationSize, batch_size, helper);
+  }
+
+  public MAPElitesEvolver(Tessellation tessellation,
+                          Function<Individual< List<Double>,S,F>, List<Double>> descriptor,
+                          Function<List<Double>, ? extends S> solutionMapper,
+                          Factory<List<Double>> genotypeFactory,
+                          PartialComparator<? super Individual<List<Double>, S, F>> individualComparator,
+                          Mutation<List<Double>> mutation, int populationSize, int batch_size, Function<Individual< List<Double>,S,F>, Double> helper) {
+    this(new MAPElitesPopulation<>(tessellation, true, descriptor, individualComparator, helper), solutionMapper, genotypeFactory, individualComparator, mutation, populationSize, batch_size);
+  }
+
+  protected MAPElitesEvolver(MAPElitesPopulation<Individual<List<Double>,S,F>> population,
+                             Function<List<Double>, ? extends S> solutionMapper,
+                             Factory<List<Double>> genotypeFactory,
+                             PartialComparator<? super Individual<List<Double>, S, F>> individualComparator,
+                             Mutation<List<Double>> mutation, int populationSize, int batch_size) {
     super(solutionMapper, genotypeFactory, individualComparator);
-    population = new MAPElitesPopulation<>(size, min, max, true, descriptor, individualComparator, helper);
+    this.population = population;
     this.mutation = mutation;
     this.populationSize = populationSize;
     this.batch_size = batch_size;
   }
 
+  public MAPElitesPopulation<Individual<List<Double>, S, F>> getPopulation() {
+    return population;
+  }
+
   @Override
   public Collection<S> solve(Function<S, F> fitnessFunction, Predicate<? super Event<List<Double>, S, F>> stopCondition, Random random, ExecutorService executor, Listener<? super Event<List<Double>, S, F>> listener) throws InterruptedException, ExecutionException {
     State state = initState();
@@ -68,12 +89,11 @@ public class MAPElitesEvolver<S, F> extends AbstractIterativeEvolver<List<Double
 
       newPops = updatePopulation(population, fitnessFunction, random, executor, state);
       population.addAll(newPops);
-      new DAGPartiallyOrderedCollection<>(population.lastAddedPerformance, individualComparator);
       L.fine(String.format("Population updated: %d individuals", population.size()));
       state.incIterations(1);
     }
     listener.done();
-    return new DAGPartiallyOrderedCollection<>(population.values(), individualComparator).firsts().stream()
+    return population.firsts().stream()
         .map(Individual::getSolution)
         .collect(Collectors.toList());
   }
@@ -11,127 +11,171 @@ import java.util.function.Function;
  */
 public class MAPElitesPopulation<T> implements PartiallyOrderedCollection<T> {
 
-  protected final Map<List<Integer>, T> archive;
+  // elites and their fitness, indexed by the cell id
+  protected final Object[] archive;
+  protected final double[] fitness;
+  // ids of the filled cells (in the first filled slots) and position of each cell among them
+  protected final int[] occupied;
+  protected final int[] positions;
+  protected int filled;
+  protected double qdScore;
   protected final Boolean maximize;
   protected final Function<T, List<Double>> descriptor;
   protected final Function<T, Double> getFitness;
   protected final PartialComparator<? super T> comparator;
-  protected final List<Double> threshold;
-  protected final List<Integer> size;
-  protected final List<Double> min;
-  protected final List<Double> max;
+  protected final Tessellation tessellation;
   public List<T> lastAddedPerformance;
   public int notAdded = 0;
   public int updated = 0;
+  // individuals that entered the archive, in a new cell or replacing an elite, since its creation
+  protected long added = 0;
 
   public MAPElitesPopulation(List<Integer> size, List<Double> min, List<Double> max, Boolean maximize, Function<T, List<Double>> descriptor, PartialComparator<? super T> comparator, Function<T, Double> getFitness) {
-    archive = new HashMap<>();
+    this(new GridTessellation(size, min, max), maximize, descriptor, comparator, getFitness);
+  }
+
+  public MAPElitesPopulation(Tessellation tessellation, Boolean maximize, Function<T, List<Double>> descriptor, PartialComparator<? super T> comparator, Function<T, Double> getFitness) {
+    this.tessellation = tessellation;
     this.maximize = maximize;
     this.descriptor = descriptor;
     this.getFitness = getFitness;
     this.comparator = comparator;
-    this.min = min;
-    this.max = max;
-    this.threshold = new ArrayList<>();
-    this.size = size;
-    for (int i = 0; i < size.size(); i++) {
-      threshold.add((max.get(i) - min.get(i)) / size.get(i));
-    }
+    archive = new Object[tessellation.size()];
+    fitness = new double[tessellation.size()];
+    occupied = new int[tessellation.size()];
+    positions = new int[tessellation.size()];
+    filled = 0;
+    qdScore = 0;
+    lastAddedPerformance = new ArrayList<>();
   }
 
-  public ArrayList<Integer> calcIndexes(List<Double> indexes) {
-    ArrayList<Integer> newIndexes = new ArrayList<>();
-    for (int i = 0; i < threshold.size(); i++) {
-      Integer index = (int) ((indexes.get(i)- min.get(i))/ threshold.get(i));
-      if (indexes.get(i) < min.get(i)) {
-        newIndexes.add(0);
-      } else if (indexes.get(i) > max.get(i)) {
-        newIndexes.add(size.get(i) - 1);
-      } else {
-        newIndexes.add(index);
-      }
-    }
-    return newIndexes;
+  public int cellIndex(List<Double> indexes) {
+    return tessellation.cell(indexes);
   }
 
-  public ArrayList<Integer> index(T individual) {
-    List<Double> indexes = this.descriptor.apply(individual);
-    return calcIndexes(indexes);
+  public int index(T individual) {
+    return cellIndex(this.descriptor.apply(individual));
   }
 
   public double getCrowedness(T individual) {
-    List<Integer> indexes = index(individual);
+    int[] neighbours = tessellation.neighbours(index(individual));
     int crowed = 0;
-    for (int i = -1; i <= 1; i++) {
-      for (int j = -1; j <= 1; j++) {
-        for (int k = -1; k <= 1; k++) {
-          for (int l = -1; l <= 1; l++) {
-            if (i != 0 && j != 0 && k != 0 && l != 0) {
-              indexes.set(0, indexes.get(0) + i);
-              indexes.set(1, indexes.get(1) + j);
-              indexes.set(2, indexes.get(2) + k);
-              indexes.set(3, indexes.get(3) + l);
-              crowed += archive.containsKey(indexes) ? 1 : 0;
-            }
-          }
-        }
+    for (int neighbour : neighbours) {
+      if (neighbour >= 0 && archive[neighbour] != null) {
+        crowed += 1;
       }
-
     }
-    return 1 - crowed / (Math.pow(3, 4) - 1);
+    return 1 - crowed / (double) neighbours.length;
+  }
+
+  public double coverage() {
+    return (double) filled / archive.length;
+  }
+
+  public double qdScore() {
+    return qdScore;
+  }
+
+  public long getAdded() {
+    return added;
+  }
+
+  @SuppressWarnings("unchecked")
+  protected T get(int cell) {
+    return (T) archive[cell];
   }
 
   @Override
   public Collection<T> all() {
-    return Collections.unmodifiableCollection(archive.values());
+    List<T> all = new ArrayList<>(filled);
+    for (int i = 0; i < filled; i++) {
+      all.add(get(occupied[i]));
+    }
+    return Collections.unmodifiableList(all);
+  }
+
+  public T sample(Random random) {
+    return get(occupied[random.nextInt(filled)]);
   }
 
   @Override
   public Collection<T> firsts() {
-    return null;
+    return front(PartialComparator.PartialComparatorOutcome.BEFORE);
   }
 
   @Override
   public Collection<T> lasts() {
-    return null;
+    return front(PartialComparator.PartialComparatorOutcome.AFTER);
+  }
+
+  // elites not dominated in the given direction, in one scan of the filled cells: the front is usually made of a few
+  // elites, hence this is linear in the size of the archive rather than quadratic as building the whole DAG
+  protected Collection<T> front(PartialComparator.PartialComparatorOutcome dominating) {
+    PartialComparator.PartialComparatorOutcome dominated = (dominating == PartialComparator.PartialComparatorOutcome.BEFORE) ?
+        PartialComparator.PartialComparatorOutcome.AFTER : PartialComparator.PartialComparatorOutcome.BEFORE;
+    List<T> front = new ArrayList<>();
+    for (int i = 0; i < filled; i++) {
+      T candidate = get(occupied[i]);
+      boolean isDominated = false;
+      Iterator<T> iterator = front.iterator();
+      while (iterator.hasNext()) {
+        PartialComparator.PartialComparatorOutcome outcome = comparator.compare(candidate, iterator.next());
+        if (outcome == dominated) {
+          // by transitivity, the candidate cannot dominate any other element of the front
+          isDominated = true;
+          break;
+        }
+        if (outcome == dominating) {
+          iterator.remove();
+        }
+      }
+      if (!isDominated) {
+        front.add(candidate);
+      }
+    }
+    return Collections.unmodifiableList(front);
   }
 
   @Override
   public boolean remove(T t) {
-    List<Double> indexes = this.descriptor.apply(t);
-    T oldInd = archive.get(calcIndexes(indexes));
-    if (oldInd.equals(t)) {
-      archive.put(calcIndexes(indexes), null);
+    int cell = index(t);
+    T oldInd = get(cell);
+    if (oldInd != null && oldInd.equals(t)) {
+      archive[cell] = null;
+      qdScore -= fitness[cell];
+      // move the last filled cell in place of the removed one
+      int position = positions[cell];
+      filled = filled - 1;
+      occupied[position] = occupied[filled];
+      positions[occupied[position]] = position;
       return true;
     }
     return false;
   }
 
   public void add(T individual) {
-    List<Integer> convertedIndexes = index(individual);
-    T oldInd = archive.get(convertedIndexes);
-
-    if (oldInd != null) {
-      if (maximize) {
-        if (getFitness.apply(individual) >= getFitness.apply(oldInd)) {
-          archive.put(convertedIndexes, individual);
-          this.updated += 1;
-          this.lastAddedPerformance.add(individual);
-        }else{
-          this.notAdded += 1;
-        }
+    int cell = index(individual);
+    double newFitness = getFitness.apply(individual);
+    if (archive[cell] != null) {
+      if (maximize ? newFitness >= fitness[cell] : newFitness <= fitness[cell]) {
+        qdScore += newFitness - fitness[cell];
+        archive[cell] = individual;
+        fitness[cell] = newFitness;
+        this.updated += 1;
+        this.lastAddedPerformance.add(individual);
+        this.added += 1;
       } else {
-        if (getFitness.apply(individual) <= getFitness.apply(oldInd)) {
-          archive.put(convertedIndexes, individual);
-          this.updated += 1;
-          this.lastAddedPerformance.add(individual);
-        }else{
-          this.notAdded+=1;
-        }
+        this.notAdded += 1;
       }
     } else {
-      archive.put(convertedIndexes, individual);
+      archive[cell] = individual;
+      fitness[cell] = newFitness;
+      qdScore += newFitness;
+      occupied[filled] = cell;
+      positions[cell] = filled;
+      filled = filled + 1;
       this.lastAddedPerformance.add(individual);
+      this.added += 1;
     }
   }
 
@@ -143,7 +187,7 @@ public class MAPElitesPopulation<T> implements PartiallyOrderedCollection<T> {
   }
 
   public Collection<T> values() {
-    return archive.values();
+    return all();
   }
 
 }
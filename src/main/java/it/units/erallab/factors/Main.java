@@ -3,15 +3,14 @@ package it.units.erallab.factors;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Range;
 import it.units.erallab.hmsrobots.core.objects.Robot;
-import it.units.erallab.hmsrobots.core.sensors.Sensor;
 import it.units.erallab.hmsrobots.tasks.locomotion.Locomotion;
 import it.units.erallab.hmsrobots.tasks.locomotion.Outcome;
 import it.units.erallab.hmsrobots.tasks.locomotion.Outcome.Component;
+import it.units.erallab.hmsrobots.util.Grid;
 import it.units.malelab.jgea.Worker;
 import it.units.malelab.jgea.core.IndependentFactory;
 import it.units.malelab.jgea.core.Individual;
 import it.units.malelab.jgea.core.evolver.*;
-import it.units.malelab.jgea.core.evolver.speciation.KMeansSpeciator;
 import it.units.malelab.jgea.core.evolver.speciation.SpeciatedEvolver;
 import it.units.malelab.jgea.core.evolver.stopcondition.Births;
 import it.units.malelab.jgea.core.listener.CSVPrinter;
@@ -22,17 +21,17 @@ import it.units.malelab.jgea.core.selector.Tournament;
 import it.units.malelab.jgea.core.selector.Worst;
 import it.units.malelab.jgea.core.util.Args;
 import it.units.malelab.jgea.core.util.Misc;
-import it.units.malelab.jgea.distance.LNorm;
-import it.units.malelab.jgea.representation.sequence.FixedLengthListFactory;
-import it.units.malelab.jgea.representation.sequence.numeric.GaussianMutation;
-import it.units.malelab.jgea.representation.sequence.numeric.GeometricCrossover;
-import it.units.malelab.jgea.representation.sequence.numeric.UniformDoubleFactory;
 
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.dyn4j.dynamics.Settings;
 
@@ -51,6 +50,41 @@ public class Main extends Worker {
     private static String  bestFileName = "./output/";
     private static String allFileName = "";
     private static Settings physicsSettings;
+    private static int cacheSize;
+    private static double earlyStopWindow;
+    private static double earlyStopProgress;
+    private static double earlyStopFraction;
+    private static EarlyStoppingLocomotion earlyStopping;
+    private static String esNoise;
+    private static int esPopulationSize;
+    private static int nWorkers;
+    private static double workerTimeout;
+    private static int nThreads;
+    private static String meDescriptor;
+    private static String meSize;
+    private static String meMin;
+    private static String meMax;
+    private static int meBatchSize;
+    private static boolean meAsync;
+    private static int nOfCells;
+    private static int meCentroids;
+    private static String scheduler;
+    private static String allFormat;
+    private static int listenerQueue;
+    private static String allSampling;
+    private static String serialization;
+    private static String outcomeMode;
+    private static OutcomeCompactor<Event<?, ? extends Robot<?>, ? extends Outcome>> compactor;
+    private static GenotypeStore genotypeStore;
+    private static double checkpointEvery;
+    private static String checkpointFileName;
+    private static Checkpoint checkpoint;
+    private static Resumption resumption;
+    private static Checkpointer<Event<?, ? extends Robot<?>, ? extends Outcome>> checkpointer;
+    private static Random random;
+    private static final String cvtCacheDirectory = "./cvt/";
+    private ExecutorService executor;
+    private static final List<NamedFunction<Event<?, ? extends Robot<?>, ? extends Outcome>, ?>> monitorFunctions = new ArrayList<>();
 
     public Main(String[] args) {
         super(args);
@@ -71,9 +105,48 @@ public class Main extends Worker {
         String size = this.a("size", "5x5");
         String sensorsConfig = "vel-area-touch";
         String signals = "1";
+        cacheSize = Args.i(this.a("cacheSize", "0"));
+        earlyStopWindow = Args.d(this.a("earlyStopWindow", "0"));
+        earlyStopProgress = Args.d(this.a("earlyStopProgress", "1"));
+        earlyStopFraction = Args.d(this.a("earlyStopFraction", "0"));
+        esNoise = this.a("esNoise", "matrix");
+        esPopulationSize = Args.i(this.a("esPopulationSize", "40"));
+        nWorkers = Args.i(this.a("workers", "0"));
+        workerTimeout = Args.d(this.a("workerTimeout", "300"));
+        nThreads = Args.i(this.a("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        meDescriptor = this.a("meDescriptor", "shape");
+        meSize = this.a("meSize", "10");
+        meMin = this.a("meMin", "");
+        meMax = this.a("meMax", "");
+        meBatchSize = Args.i(this.a("meBatchSize", "100"));
+        meAsync = Boolean.parseBoolean(this.a("meAsync", "false"));
+        meCentroids = Args.i(this.a("meCentroids", "0"));
+        scheduler = this.a("scheduler", "fifo");
+        allFormat = this.a("allFormat", "csv");
+        listenerQueue = Args.i(this.a("listenerQueue", "0"));
+        allSampling = this.a("allSampling", "all");
+        serialization = this.a("serialization", "json");
+        outcomeMode = this.a("outcomeMode", "full");
+        checkpointEvery = Args.d(this.a("checkpointEvery", "0"));
+        boolean resume = Boolean.parseBoolean(this.a("resume", "false"));
         physicsSettings = new Settings();
         bestFileName += String.join(".", evolverName, String.valueOf(seed), representation, size, sensorsConfig, signals, terrain);
-        allFileName += bestFileName + "." + "all.csv";
+        checkpointFileName = bestFileName + ".checkpoint";
+        random = new Random(seed);
+        if (resume && new File(checkpointFileName).exists()) {
+            try {
+                checkpoint = Checkpoint.load(new File(checkpointFileName));
+            } catch (IOException e) {
+                L.severe(String.format("Cannot load checkpoint %s due to %s", checkpointFileName, e));
+                return;
+            }
+            L.info(String.format("Resuming from %s at iteration %d", checkpointFileName, checkpoint.getIterations()));
+            random = checkpoint.getRandom();
+            resumption = new Resumption(checkpoint);
+            // the files of the interrupted run are kept, and possibly contain iterations after the checkpoint
+            bestFileName += ".from-" + checkpoint.getIterations();
+        }
+        allFileName += bestFileName + "." + (allFormat.equals("columnar") ? "all.bin" : "all.csv");
         bestFileName += ".csv";
 
         try {
@@ -86,69 +159,289 @@ public class Main extends Worker {
     private void evolve(String representation, String size, String sensorConfig, String signal, int[] innerNeurons) throws FileNotFoundException {
         int width = Integer.parseInt(size.split("x")[0]);
         int height = Integer.parseInt(size.split("x")[1]);
-        List<Sensor> sensors = RobotMapper.getSensors(sensorConfig);
-        RobotMapper mapper = RobotMapper.createMapper(representation, width, height, sensors, innerNeurons, Integer.parseInt(signal));
-        IndependentFactory<List<Double>> factory = (representation.contains("direct")) ? new FixedLengthListFactory<>(mapper.getGenotypeSize(), new UniformDoubleFactory(-1.0D, 1.0D)) : new GaussianFactory(mapper.getGenotypeSize());
+        nOfCells = width * height;
+        RobotMapper mapper = RobotMapper.createMapper(representation, width, height, sensorConfig, innerNeurons, Integer.parseInt(signal));
+        IndependentFactory<List<Double>> factory = (representation.contains("direct")) ? new DoubleVectorFactory(mapper.getGenotypeSize(), -1.0D, 1.0D) : new GaussianFactory(mapper.getGenotypeSize());
+        if (checkpoint != null) {
+            factory = new ReplayFactory(checkpoint.getGenotypes(), factory);
+        }
+        if (checkpointEvery > 0) {
+            checkpointer = new Checkpointer<>(new File(checkpointFileName), checkpointEvery, random);
+            monitorFunctions.addAll(AuxUtils.checkpointFunctions(checkpointer));
+        }
+        // outcomes accumulated during the episode, without keeping the trajectory
+        boolean streaming = outcomeMode.equals("streaming");
+        if (streaming && nWorkers > 0) {
+            throw new IllegalArgumentException("Streaming outcomes are not supported with evaluation workers");
+        }
         Function<Robot<?>, Outcome> trainingTask = new Locomotion(episodeTime, Locomotion.createTerrain(terrain), physicsSettings);
+        if (earlyStopWindow > 0.0D) {
+            // workers run their own episodes, and do not know the median distance of the population
+            if (nWorkers > 0) {
+                throw new IllegalArgumentException("Early stopping is not supported with evaluation workers");
+            }
+            earlyStopping = new EarlyStoppingLocomotion(episodeTime, Locomotion.createTerrain(terrain), physicsSettings, earlyStopWindow, earlyStopProgress, earlyStopFraction, streaming, 0.0D, frequencyThreshold, nFrequencySamples);
+            trainingTask = earlyStopping;
+            monitorFunctions.addAll(AuxUtils.earlyStoppingFunctions(earlyStopping));
+            checkpointed("early-stopping", earlyStopping);
+        } else if (streaming) {
+            // never stopped
+            trainingTask = new EarlyStoppingLocomotion(episodeTime, Locomotion.createTerrain(terrain), physicsSettings, Double.POSITIVE_INFINITY, earlyStopProgress, 0.0D, true, 0.0D, frequencyThreshold, nFrequencySamples);
+        }
+        if (mapper.usesBodyCache()) {
+            monitorFunctions.addAll(AuxUtils.bodyCacheFunctions(mapper));
+        }
+        monitorFunctions.addAll(AuxUtils.analysisFunctions());
+        if (serialization.equals("store")) {
+            String storeFileName = bestFileName.substring(0, bestFileName.length() - ".csv".length()) + ".genotypes.bin";
+            try {
+                genotypeStore = GenotypeStore.create(new File(storeFileName), List.of("representation=" + representation, "size=" + width + "x" + height, "sensors=" + sensorConfig, "signals=" + signal, EvaluationWorker.innerNeuronsArg(innerNeurons)));
+            } catch (IOException e) {
+                L.severe(String.format("Cannot create genotype store %s due to %s", storeFileName, e));
+                return;
+            }
+        }
+        // remembers the genotype of each robot, for those evaluations needing it
+        GenotypeRegistry registry = new GenotypeRegistry(mapper);
+        Function<List<Double>, Robot<?>> solutionMapper = (cacheSize > 0 || nWorkers > 0) ? registry : mapper;
+        WorkerFleet fleet = null;
+        if (nWorkers > 0) {
+            try {
+                List<String> workerArgs = new ArrayList<>(List.of("representation=" + representation, "size=" + size, "sensors=" + sensorConfig, "signals=" + signal, EvaluationWorker.innerNeuronsArg(innerNeurons),
+                        "terrain=" + terrain, "episodeTime=" + episodeTime, "spectrumMinFrequency=0", "spectrumMaxFrequency=" + frequencyThreshold, "spectrumSize=" + nFrequencySamples));
+                workerArgs.addAll(EvaluationWorker.settingsArgs(physicsSettings));
+                fleet = new WorkerFleet(nWorkers, registry, workerArgs, workerTimeout);
+            } catch (IOException e) {
+                L.severe(String.format("Cannot start evaluation workers due to %s", e));
+                return;
+            }
+            trainingTask = fleet;
+        }
+        if (outcomeMode.equals("compact-retained")) {
+            // the trajectory is dropped at the first event the individual takes part in
+            trainingTask = trainingTask.andThen(o -> new CompactableOutcome(o, 0.0D, frequencyThreshold, nFrequencySamples));
+            compactor = new OutcomeCompactor<>();
+            monitorFunctions.addAll(AuxUtils.compactionFunctions(compactor));
+        } else if (!outcomeMode.equals("full") && !streaming) {
+            throw new IllegalArgumentException("Unknown outcome mode: " + outcomeMode);
+        }
+        if (cacheSize > 0) {
+            OutcomeCache cache = new OutcomeCache(trainingTask, registry, cacheSize);
+            trainingTask = cache;
+            monitorFunctions.addAll(AuxUtils.cacheFunctions(cache));
+        }
+        UtilizationMonitor<Robot<?>, Outcome> utilization = new UtilizationMonitor<>(trainingTask, evaluationThreads());
+        trainingTask = utilization;
+        monitorFunctions.addAll(AuxUtils.utilizationFunctions(utilization));
+        monitorFunctions.addAll(AuxUtils.throughputFunctions());
+        CostModel costModel = null;
+        if (scheduler.equals("cost")) {
+            costModel = new CostModel(trainingTask, evaluationThreads());
+            trainingTask = costModel;
+            checkpointed("cost-model", costModel);
+        }
+        // whole batches are submitted, threads wait in the cost model for one of the evaluation threads or, with workers
+        // only, for the workers; the pools made here are shut down at the end of the run
+        ExecutorService delegate = this.executorService;
+        if (costModel != null) {
+            delegate = Executors.newCachedThreadPool();
+        } else if (fleet != null) {
+            delegate = Executors.newFixedThreadPool(nWorkers);
+        }
+        SchedulingExecutor scheduling = new SchedulingExecutor(delegate, costModel, evaluationThreads());
+        this.executor = scheduling;
+        monitorFunctions.addAll(AuxUtils.schedulingFunctions(scheduling));
 
         try {
             Stopwatch stopwatch = Stopwatch.createStarted();
             L.info(String.format("Starting %s", bestFileName));
             Collection<Robot<?>> solutions = switch (evolverName) {
-                case "es" -> this.evolveES(factory, mapper, trainingTask);
-                case "ga" -> this.evolveGA(factory, mapper, trainingTask);
-                case "se-geno" -> this.evolveSEgeno(factory, mapper, trainingTask);
-                case "se-shape" -> this.evolveSEshape(factory, mapper, trainingTask);
-                case "se-behaviour" -> this.evolveSEbehaviour(factory, mapper, trainingTask);
-                case "map-elites" -> this.evolveMAPElites(factory, mapper, trainingTask);
+                case "es" -> this.evolveES(factory, solutionMapper, trainingTask);
+                case "ga" -> this.evolveGA(factory, solutionMapper, trainingTask);
+                case "ga-steady" -> this.evolveSteadyGA(factory, solutionMapper, trainingTask);
+                case "se-geno" -> this.evolveSEgeno(factory, solutionMapper, trainingTask);
+                case "se-shape" -> this.evolveSEshape(factory, solutionMapper, trainingTask);
+                case "se-behaviour" -> this.evolveSEbehaviour(factory, solutionMapper, trainingTask);
+                case "map-elites" -> this.evolveMAPElites(factory, solutionMapper, trainingTask);
                 default -> throw new IllegalArgumentException("Unknown evolver name: " + evolverName);
             };
-            L.info(String.format("Done %s: %d solutions in %4ds", bestFileName, solutions.size(), stopwatch.elapsed(TimeUnit.SECONDS)));
+            L.info(String.format("Done %s: %d solutions in %4ds, with %.1f%% utilization of %d evaluation threads and a peak heap of %.1f MB", bestFileName, solutions.size(), stopwatch.elapsed(TimeUnit.SECONDS), 100 * utilization.getUtilization(), evaluationThreads(), peakHeapMegabytes()));
         }
         catch (ExecutionException | InterruptedException e) {
             L.severe(String.format("Cannot complete %s due to %s", bestFileName, e));
             e.printStackTrace();
         }
+        finally {
+            if (fleet != null) {
+                fleet.close();
+            }
+            if (fleet != null || costModel != null) {
+                this.executor.shutdownNow();
+            }
+            if (checkpointer != null) {
+                checkpointer.shutdown();
+            }
+            if (genotypeStore != null) {
+                try {
+                    genotypeStore.close();
+                } catch (IOException e) {
+                    L.warning(String.format("Cannot close genotype store due to %s", e));
+                }
+            }
+        }
+    }
+
+    private Collection<Robot<?>> evolveES(IndependentFactory<List<Double>> factory, Function<List<Double>, Robot<?>> mapper, Function<Robot<?>, Outcome> trainingTask) throws ExecutionException, InterruptedException {
+        Evolver<List<Double>, Robot<?>, Outcome> evolver = new CanonicalEvolutionaryStrategy<>(mapper, factory, PartialComparator.from(Outcome.class).reversed().comparing(Individual::getFitness), 0.35, esPopulationSize, esPopulationSize / 4, esNoise.equals("seeded"));  //BasicEvolutionaryStrategy<>(mapper, factory, PartialComparator.from(Outcome.class).reversed().comparing(Individual::getFitness), 0.35, 40, 40 / 4, 1, true);
+        return solve(evolver, trainingTask);
+    }
+
+    private Collection<Robot<?>> evolveGA(IndependentFactory<List<Double>> factory, Function<List<Double>, Robot<?>> mapper, Function<Robot<?>, Outcome> trainingTask) throws ExecutionException, InterruptedException {
+        Evolver<List<Double>, Robot<?>, Outcome> evolver = new StandardEvolver<>(mapper, factory, PartialComparator.from(Outcome.class).reversed().comparing(Individual::getFitness), 100, Map.of(new DoubleVectorGaussianMutation(0.35D), 0.02D, new DoubleVectorGeometricCrossover(Range.closed(-1.0D, 2.0D)).andThen(new DoubleVectorGaussianMutation(0.1D)), 0.08D), new Tournament(5), new Worst(), 100, true, false);
+        return solve(evolver, trainingTask);
+    }
+
+    private Collection<Robot<?>> evolveSteadyGA(IndependentFactory<List<Double>> factory, Function<List<Double>, Robot<?>> mapper, Function<Robot<?>, Outcome> trainingTask) throws ExecutionException, InterruptedException {
+        Evolver<List<Double>, Robot<?>, Outcome> evolver = new SteadyStateEvolver<>(mapper, factory, PartialComparator.from(Outcome.class).reversed().comparing(Individual::getFitness), 100, Map.of(new DoubleVectorGaussianMutation(0.35D), 0.02D, new DoubleVectorGeometricCrossover(Range.closed(-1.0D, 2.0D)).andThen(new DoubleVectorGaussianMutation(0.1D)), 0.08D), new Tournament(5), new Worst(), evaluationThreads());
+        return solve(evolver, trainingTask);
+    }
+
+    private Collection<Robot<?>> evolveSEgeno(IndependentFactory<List<Double>> factory, Function<List<Double>, Robot<?>> mapper, Function<Robot<?>, Outcome> trainingTask) throws ExecutionException, InterruptedException {
+        Evolver<List<Double>, Robot<?>, Outcome> evolver = new SpeciatedEvolver<>(mapper, factory, PartialComparator.from(Outcome.class).reversed().comparing(Individual::getFitness), 100, Map.of(new DoubleVectorGaussianMutation(0.35D), 0.02D, new DoubleVectorGeometricCrossover(Range.closed(-1.0D, 2.0D)), 0.08D),
+                5, monitored(new WarmKMeansSpeciator<>(10, 200, individual -> DoubleVector.of(individual.getGenotype()).values(), seed)), 0.75, false);
+        return solve(evolver, trainingTask);
+    }
+
+    private Collection<Robot<?>> evolveSEshape(IndependentFactory<List<Double>> factory, Function<List<Double>, Robot<?>> mapper, Function<Robot<?>, Outcome> trainingTask) throws ExecutionException, InterruptedException {
+        Evolver<List<Double>, Robot<?>, Outcome> evolver = new SpeciatedEvolver<>(mapper, factory, PartialComparator.from(Outcome.class).reversed().comparing(Individual::getFitness), 100, Map.of(new DoubleVectorGaussianMutation(0.35D), 0.02D, new DoubleVectorGeometricCrossover(Range.closed(-1.0D, 2.0D)), 0.08D),
+                5, monitored(new WarmKMeansSpeciator<>(10, 200, individual -> OutcomeAnalysis.getAveragePosture(individual.getFitness()).stream().mapToDouble(b -> (b.getValue()) ? 1.0 : 0.0).toArray(), seed)), 0.75, false);
+        return solve(evolver, trainingTask);
+    }
+
+    private Collection<Robot<?>> evolveSEbehaviour(IndependentFactory<List<Double>> factory, Function<List<Double>, Robot<?>> mapper, Function<Robot<?>, Outcome> trainingTask) throws ExecutionException, InterruptedException {
+        Evolver<List<Double>, Robot<?>, Outcome> evolver = new SpeciatedEvolver<>(mapper, factory, PartialComparator.from(Outcome.class).reversed().comparing(Individual::getFitness), 100, Map.of(new DoubleVectorGaussianMutation(0.35D), 0.02D, new DoubleVectorGeometricCrossover(Range.closed(-1.0D, 2.0D)), 0.08D),
+                5, monitored(new WarmKMeansSpeciator<>(10, 200, individual -> OutcomeAnalysis.getCenterPowerSpectrum(individual.getFitness(), Component.Y, 0, frequencyThreshold, nFrequencySamples).stream().mapToDouble(Outcome.Mode::getStrength).toArray(), seed)), 0.75, false);
+        return solve(evolver, trainingTask);
+    }
+
+    private Collection<Robot<?>> evolveMAPElites(IndependentFactory<List<Double>> factory, Function<List<Double>, Robot<?>> mapper, Function<Robot<?>, Outcome> trainingTask) throws ExecutionException, InterruptedException {
+        // shape dimensions are known as soon as the robot is built, spectrum ones need the whole episode
+        Function<Individual<List<Double>, Robot<?>, Outcome>, List<Double>> descriptor = i -> {
+            if (meDescriptor.equals("spectrum")) {
+                // normalized to sum to 1, so that strengths are within the default bounds whatever the amplitude of the motion
+                List<Double> strengths = OutcomeAnalysis.getCenterPowerSpectrum(i.getFitness(), Component.Y, 0, frequencyThreshold, nFrequencySamples).stream()
+                        .map(Outcome.Mode::getStrength)
+                        .collect(Collectors.toList());
+                double sum = strengths.stream().mapToDouble(Double::doubleValue).sum();
+                return sum > 0 ? strengths.stream().map(s -> s / sum).collect(Collectors.toList()) : strengths;
+            }
+            Grid<?> voxels = i.getSolution().getVoxels();
+            List<Double> shape = ExtractFeatures.shapeDescriptor(Grid.create(voxels.getW(), voxels.getH(), (x, y) -> voxels.get(x, y) != null));
+            if (!meDescriptor.equals("shape-spectrum")) {
+                return shape;
+            }
+            return Misc.concat(List.of(shape, List.of(
+                    dominantFrequency(i.getFitness(), Component.X),
+                    dominantFrequency(i.getFitness(), Component.Y)
+            )));
+        };
+        List<Double> defaultMin = new ArrayList<>(List.of(0.0D, 0.0D, 0.0D));
+        List<Double> defaultMax = new ArrayList<>(List.of(1.0D, 1.0D, (double) nOfCells));
+        if (meDescriptor.equals("spectrum")) {
+            defaultMin = Collections.nCopies(nFrequencySamples, 0.0D);
+            defaultMax = Collections.nCopies(nFrequencySamples, 1.0D);
+        } else if (meDescriptor.equals("shape-spectrum")) {
+            defaultMin.addAll(List.of(0.0D, 0.0D));
+            defaultMax.addAll(List.of(frequencyThreshold, frequencyThreshold));
+        }
+        List<Double> mins = parseDimensions(meMin, defaultMin.size(), Double::parseDouble, defaultMin);
+        List<Double> maxs = parseDimensions(meMax, defaultMax.size(), Double::parseDouble, defaultMax);
+        Tessellation tessellation;
+        if (meCentroids > 0) {
+            try {
+                tessellation = new CentroidalTessellation(meCentroids, mins, maxs, meCentroids * 20, 20, seed, new File(cvtCacheDirectory));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            tessellation = new GridTessellation(parseDimensions(meSize, defaultMin.size(), Integer::parseInt, null), mins, maxs);
+        }
+        PartialComparator<Individual<List<Double>, Robot<?>, Outcome>> comparator = PartialComparator.from(Outcome.class).reversed().comparing(Individual::getFitness);
+        // a resumed archive starts with all the elites of the checkpoint
+        int initialSize = (checkpoint != null) ? checkpoint.getNOfGenotypes() : 100;
+        MAPElitesEvolver<Robot<?>, Outcome> evolver = meAsync ?
+                new AsyncMAPElitesEvolver<>(tessellation, descriptor, mapper, factory, comparator, new DoubleVectorGaussianMutation(0.35D), initialSize, evaluationThreads(), meBatchSize, i -> i.getFitness().getDistance()) :
+                new MAPElitesEvolver<>(tessellation, descriptor, mapper, factory, comparator, new DoubleVectorGaussianMutation(0.35D), initialSize, meBatchSize, i -> i.getFitness().getDistance());
+        monitorFunctions.addAll(AuxUtils.archiveFunctions(evolver.getPopulation()));
+        return solve(evolver, trainingTask);
+    }
+
+    private Collection<Robot<?>> solve(Evolver<List<Double>, Robot<?>, Outcome> evolver, Function<Robot<?>, Outcome> trainingTask) throws ExecutionException, InterruptedException {
+        if (evolver instanceof Checkpointable) {
+            checkpointed("evolver", (Checkpointable) evolver);
+        }
+        Listener.Factory<Event<?, ? extends Robot<?>, ? extends Outcome>> listenerFactory = createListenerFactory();
+        if (checkpointer != null) {
+            listenerFactory = listenerFactory.and(checkpointer);
+        }
+        if (resumption == null) {
+            return evolver.solve(trainingTask, new Births(nBirths), random, this.executor, listenerFactory.build());
+        }
+        return evolver.solve(trainingTask, resumption.shift(new Births(nBirths)), random, this.executor, resumption.shift(listenerFactory).build());
     }
 
-    private Collection<Robot<?>> evolveES(IndependentFactory<List<Double>> factory, RobotMapper mapper, Function<Robot<?>, Outcome> trainingTask) throws ExecutionException, InterruptedException {
-        Evolver<List<Double>, Robot<?>, Outcome> evolver = new CanonicalEvolutionaryStrategy<>(mapper, factory, PartialComparator.from(Outcome.class).reversed().comparing(Individual::getFitness), 0.35, 40, 40 / 4);  //BasicEvolutionaryStrategy<>(mapper, factory, PartialComparator.from(Outcome.class).reversed().comparing(Individual::getFitness), 0.35, 40, 40 / 4, 1, true);
-        return evolver.solve(trainingTask, new Births(nBirths), new Random(seed), this.executorService, createListenerFactory().build());
+    private static <T> MonitoredSpeciator<T> monitored(MonitoredSpeciator<T> speciator) {
+        monitorFunctions.addAll(AuxUtils.speciationFunctions(speciator));
+        if (speciator instanceof Checkpointable) {
+            checkpointed("speciator", (Checkpointable) speciator);
+        }
+        return speciator;
     }
 
-    private Collection<Robot<?>> evolveGA(IndependentFactory<List<Double>> factory, RobotMapper mapper, Function<Robot<?>, Outcome> trainingTask) throws ExecutionException, InterruptedException {
-        Evolver<List<Double>, Robot<?>, Outcome> evolver = new StandardEvolver<>(mapper, factory, PartialComparator.from(Outcome.class).reversed().comparing(Individual::getFitness), 100, Map.of(new GaussianMutation(0.35D), 0.02D, new GeometricCrossover(Range.closed(-1.0D, 2.0D)).andThen(new GaussianMutation(0.1D)), 0.08D), new Tournament(5), new Worst(), 100, true, false);
-        return evolver.solve(trainingTask, new Births(nBirths), new Random(seed), this.executorService, createListenerFactory().build());
+    // restored from the checkpoint, if resuming, and saved in the next ones, if any
+    private static void checkpointed(String name, Checkpointable part) {
+        if (checkpoint != null && checkpoint.getState(name) != null) {
+            part.resume(checkpoint.getState(name));
+        }
+        if (checkpointer != null) {
+            checkpointer.register(name, part);
+        }
     }
 
-    private Collection<Robot<?>> evolveSEgeno(IndependentFactory<List<Double>> factory, RobotMapper mapper, Function<Robot<?>, Outcome> trainingTask) throws ExecutionException, InterruptedException {
-        Evolver<List<Double>, Robot<?>, Outcome> evolver = new SpeciatedEvolver<>(mapper, factory, PartialComparator.from(Outcome.class).reversed().comparing(Individual::getFitness), 100, Map.of(new GaussianMutation(0.35D), 0.02D, new GeometricCrossover(Range.closed(-1.0D, 2.0D)), 0.08D),
-                5, new KMeansSpeciator<>(10, 200, new LNorm(2), individual -> {
-                                        List<Double> g = individual.getGenotype();
-                                        double[] out = new double[g.size()];
-                                        for (int i = 0; i < g.size(); ++i) {
-                                          out[i] = g.get(i);
-                                        }
-                                        return out;
-                                    }), 0.75, false);
-        return evolver.solve(trainingTask, new Births(nBirths), new Random(seed), this.executorService, createListenerFactory().build());
+    // threads actually running evaluations, either the ones of the worker or the ones waiting for the worker processes
+    private static int evaluationThreads() {
+        return (nWorkers > 0) ? nWorkers : nThreads;
     }
 
-    private Collection<Robot<?>> evolveSEshape(IndependentFactory<List<Double>> factory, RobotMapper mapper, Function<Robot<?>, Outcome> trainingTask) throws ExecutionException, InterruptedException {
-        Evolver<List<Double>, Robot<?>, Outcome> evolver = new SpeciatedEvolver<>(mapper, factory, PartialComparator.from(Outcome.class).reversed().comparing(Individual::getFitness), 100, Map.of(new GaussianMutation(0.35D), 0.02D, new GeometricCrossover(Range.closed(-1.0D, 2.0D)), 0.08D),
-                5, new KMeansSpeciator<>(10, 200, new LNorm(2), individual -> individual.getFitness().getAveragePosture().stream().mapToDouble(b -> (b.getValue()) ? 1.0 : 0.0).toArray()), 0.75, false);
-        return evolver.solve(trainingTask, new Births(nBirths), new Random(seed), this.executorService, createListenerFactory().build());
+    // sum of the peaks of the heap pools since the start of the process, to compare outcome modes
+    private static double peakHeapMegabytes() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(p -> p.getType() == MemoryType.HEAP)
+                .mapToLong(p -> p.getPeakUsage().getUsed())
+                .sum() / (1024d * 1024d);
     }
 
-    private Collection<Robot<?>> evolveSEbehaviour(IndependentFactory<List<Double>> factory, RobotMapper mapper, Function<Robot<?>, Outcome> trainingTask) throws ExecutionException, InterruptedException {
-        Evolver<List<Double>, Robot<?>, Outcome> evolver = new SpeciatedEvolver<>(mapper, factory, PartialComparator.from(Outcome.class).reversed().comparing(Individual::getFitness), 100, Map.of(new GaussianMutation(0.35D), 0.02D, new GeometricCrossover(Range.closed(-1.0D, 2.0D)), 0.08D),
-                5, new KMeansSpeciator<>(10, 200, new LNorm(2), individual -> individual.getFitness().getCenterPowerSpectrum(Component.Y, 0, frequencyThreshold, nFrequencySamples).stream().mapToDouble(Outcome.Mode::getStrength).toArray()), 0.75, false);
-        return evolver.solve(trainingTask, new Births(nBirths), new Random(seed), this.executorService, createListenerFactory().build());
+    private static double dominantFrequency(Outcome outcome, Component component) {
+        return OutcomeAnalysis.getCenterPowerSpectrum(outcome, component, 0, frequencyThreshold, nFrequencySamples).stream()
+                .max(Comparator.comparingDouble(Outcome.Mode::getStrength))
+                .map(Outcome.Mode::getFrequency)
+                .orElse(0.0D);
     }
 
-    private Collection<Robot<?>> evolveMAPElites(IndependentFactory<List<Double>> factory, RobotMapper mapper, Function<Robot<?>, Outcome> trainingTask) throws ExecutionException, InterruptedException {
-        Evolver<List<Double>, Robot<?>, Outcome> evolver = null;//new MAPElitesEvolver<>(, , , , mapper, factory, PartialComparator.from(Outcome.class).reversed().comparing(Individual::getFitness), , , , );
-        return evolver.solve(trainingTask, new Births(nBirths), new Random(seed), this.executorService, createListenerFactory().build());
+    // either one value per dimension or a single value for all of them
+    private static <T> List<T> parseDimensions(String s, int n, Function<String, T> parser, List<T> defaultValues) {
+        if (s.isEmpty()) {
+            return defaultValues;
+        }
+        String[] pieces = s.split(",");
+        if (pieces.length != 1 && pieces.length != n) {
+            throw new IllegalArgumentException(String.format("Expected 1 or %d values, found %d in %s", n, pieces.length, s));
+        }
+        List<T> values = new ArrayList<>();
+        for (int i = 0; i < n; ++i) {
+            values.add(parser.apply(pieces[(pieces.length == 1) ? 0 : i].trim()));
+        }
+        return values;
     }
 
     private static Listener.Factory<Event<?, ? extends Robot<?>, ? extends Outcome>> createListenerFactory() {
@@ -159,28 +452,53 @@ public class Main extends Worker {
         List<NamedFunction<Event<?, ? extends Robot<?>, ? extends Outcome>, ?>> populationFunctions = AuxUtils.populationFunctions(fitnessFunction);
         List<NamedFunction<Outcome, ?>> basicOutcomeFunctions = AuxUtils.basicOutcomeFunctions();
         List<NamedFunction<Outcome, ?>> detailedOutcomeFunctions = AuxUtils.detailedOutcomeFunctions(0.0, frequencyThreshold, nFrequencySamples);
+        List<NamedFunction<Individual<?, ? extends Robot<?>, ? extends Outcome>, ?>> serializationFunctions = (genotypeStore != null) ? AuxUtils.genotypeHashFunction(genotypeStore) : AuxUtils.serializationFunction(true);
+        // evaluated on the evolution thread even when files are written by a background one, as they read counters
+        List<NamedFunction<Event<?, ? extends Robot<?>, ? extends Outcome>, ?>> eventFunctions = (bestFileName != null) ? Misc.concat(List.of(basicFunctions, monitorFunctions, populationFunctions)) : List.of();
         Listener.Factory<Event<?, ? extends Robot<?>, ? extends Outcome>> factory = Listener.Factory.deaf();
+        // reference for early stopping
+        if (earlyStopping != null) {
+            factory = factory.and(() -> event -> earlyStopping.setReferenceDistance(event.getOrderedPopulation().all().stream()
+                    .mapToDouble(i -> fitnessFunction.apply(i.getFitness()))
+                    .sorted()
+                    .skip(event.getOrderedPopulation().all().size() / 2)
+                    .findFirst()
+                    .orElse(Double.NaN)));
+        }
         // file listeners
+        Listener.Factory<Event<?, ? extends Robot<?>, ? extends Outcome>> files = Listener.Factory.deaf();
         if (bestFileName != null) {
-            factory = factory.and(new CSVPrinter<>(Misc.concat(List.of(
-                    basicFunctions,
-                    populationFunctions,
+            files = files.and(new CSVPrinter<>(Misc.concat(List.of(
+                    AsyncListener.precomputed(eventFunctions),
                     NamedFunction.then(best(), basicIndividualFunctions),
                     NamedFunction.then(as(Outcome.class).of(fitness()).of(best()), basicOutcomeFunctions),
                     NamedFunction.then(as(Outcome.class).of(fitness()).of(best()), detailedOutcomeFunctions),
-                    NamedFunction.then(best(), AuxUtils.serializationFunction(true))
+                    NamedFunction.then(best(), serializationFunctions)
             )), new File(bestFileName)
             ));
         }
         if (allFileName != null) {
-            factory = factory.and(Listener.Factory.forEach(
-                    event -> event.getOrderedPopulation().all(),
-                    new CSVPrinter<>(Misc.concat(List.of(
-                            NamedFunction.then(as(Outcome.class).of(fitness()), detailedOutcomeFunctions),
-                            NamedFunction.then(as(Outcome.class).of(fitness()), basicOutcomeFunctions),
-                            basicIndividualFunctions,
-                            AuxUtils.serializationFunction(true)
-                            )), new File(allFileName))));
+            List<NamedFunction<Individual<?, ? extends Robot<?>, ? extends Outcome>, ?>> allFunctions = Misc.concat(List.of(
+                    NamedFunction.then(as(Outcome.class).of(fitness()), detailedOutcomeFunctions),
+                    NamedFunction.then(as(Outcome.class).of(fitness()), basicOutcomeFunctions),
+                    basicIndividualFunctions,
+                    serializationFunctions
+            ));
+            // unsampled individuals are never given to the printer
+            PopulationSampler sampler = new PopulationSampler(allSampling, new Births(nBirths), seed);
+            files = files.and(Listener.Factory.forEach(
+                    event -> sampler.sample(event, event.getOrderedPopulation().all(), (i1, i2) -> Double.compare(fitnessFunction.apply(i2.getFitness()), fitnessFunction.apply(i1.getFitness()))),
+                    allFormat.equals("columnar") ? new ColumnarPrinter<>(allFunctions, new File(allFileName)) : new CSVPrinter<>(allFunctions, new File(allFileName))));
+        }
+        // formatting and writing happen off the evolution thread, if asked
+        // a resumed run starts with the event of the checkpoint, already written
+        if (resumption != null) {
+            files = Resumption.skipFirst(files);
+        }
+        factory = factory.and(new AsyncListener<>(files, AsyncListener.snapshotter(eventFunctions), listenerQueue));
+        // compacted outcomes give the same values, hence the writer thread may still be reading them
+        if (compactor != null) {
+            factory = factory.and(compactor);
         }
         return factory;
     }
@@ -0,0 +1,16 @@
+package it.units.erallab.factors;
+
+import it.units.malelab.jgea.core.evolver.speciation.SpeciatedEvolver;
+
+/**
+ * A speciator reporting the cost of its last speciation, logged in the best file by the speciated evolvers.
+ */
+public interface MonitoredSpeciator<T> extends SpeciatedEvolver.Speciator<T> {
+
+  // duration of the last speciation, in milliseconds
+  double getLastMillis();
+
+  // clustering iterations of the last speciation
+  int getLastIterations();
+
+}
@@ -0,0 +1,195 @@
+package it.units.erallab.factors;
+
+import it.units.erallab.hmsrobots.tasks.locomotion.Outcome;
+import it.units.erallab.hmsrobots.util.Grid;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Accumulates the values of the outcome of an episode while it runs, so that its trajectory is never kept: only the
+ * first and the last observations are, from which {@link Outcome} computes distance, velocity, computation time and
+ * powers. The average posture is the per-cell majority of the postures of the steps; the x and y spectra of the center
+ * of mass are computed by a {@link GoertzelBank}; the main gait is the most covering repeated sequence of footprints,
+ * each being the parts of the robot touching the ground for most of an interval. Postures, spectra and gait are hence
+ * the estimates of this class, not the values {@link Outcome} would compute on the whole trajectory.
+ */
+public class OutcomeAccumulator {
+
+    private static final int FOOTPRINT_BINS = 8;
+    private static final double FOOTPRINT_INTERVAL = 0.5D;
+    private static final int MAX_GAIT_LENGTH = 8;
+
+    private final double spectrumMinFrequency;
+    private final double spectrumMaxFrequency;
+    private final int spectrumSize;
+    private final Map<Outcome.Component, GoertzelBank> banks;
+    private final int intervalSteps;
+    private final int[] touches;
+    private final List<Integer> footprints;
+    private int intervalStep;
+    private int[] postureCounts;
+    private int postureW;
+    private int postureH;
+    private int nOfSteps;
+    private double firstT;
+    private Outcome.Observation first;
+    private double lastT;
+    private Outcome.Observation last;
+
+    public OutcomeAccumulator(double samplingPeriod, double spectrumMinFrequency, double spectrumMaxFrequency, int spectrumSize) {
+        this.spectrumMinFrequency = spectrumMinFrequency;
+        this.spectrumMaxFrequency = spectrumMaxFrequency;
+        this.spectrumSize = spectrumSize;
+        this.banks = new EnumMap<>(Outcome.Component.class);
+        for (Outcome.Component component : Outcome.Component.values()) {
+            banks.put(component, new GoertzelBank(samplingPeriod, spectrumMinFrequency, spectrumMaxFrequency, spectrumSize));
+        }
+        this.intervalSteps = Math.max(1, (int) Math.round(FOOTPRINT_INTERVAL / samplingPeriod));
+        this.touches = new int[FOOTPRINT_BINS];
+        this.footprints = new ArrayList<>();
+    }
+
+    public void add(double t, Outcome.Observation observation, double centerX, double centerY) {
+        if (first == null) {
+            first = observation;
+            firstT = t;
+        }
+        last = observation;
+        lastT = t;
+        nOfSteps = nOfSteps + 1;
+        banks.get(Outcome.Component.X).add(centerX);
+        banks.get(Outcome.Component.Y).add(centerY);
+        addPosture(new Outcome(new TreeMap<>(Map.of(t, observation))).getAveragePosture());
+        addTouches(observation);
+    }
+
+    private void addPosture(Grid<Boolean> posture) {
+        if (postureCounts == null) {
+            postureW = posture.getW();
+            postureH = posture.getH();
+            postureCounts = new int[postureW * postureH];
+        }
+        for (int x = 0; x < postureW; ++x) {
+            for (int y = 0; y < postureH; ++y) {
+                if (Boolean.TRUE.equals(posture.get(x, y))) {
+                    postureCounts[y * postureW + x] += 1;
+                }
+            }
+        }
+    }
+
+    // bins split the horizontal extent of the robot at this step
+    private void addTouches(Outcome.Observation observation) {
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        for (var poly : observation.getVoxelPolies().values()) {
+            if (poly != null) {
+                minX = Math.min(minX, poly.boundingBox().min.x);
+                maxX = Math.max(maxX, poly.boundingBox().max.x);
+            }
+        }
+        if (maxX > minX) {
+            boolean[] touched = new boolean[FOOTPRINT_BINS];
+            for (var poly : observation.getVoxelPolies().values()) {
+                if (poly != null && poly.isTouchingGround()) {
+                    int from = (int) Math.floor((poly.boundingBox().min.x - minX) / (maxX - minX) * FOOTPRINT_BINS);
+                    int to = (int) Math.ceil((poly.boundingBox().max.x - minX) / (maxX - minX) * FOOTPRINT_BINS);
+                    for (int b = Math.max(0, from); b < Math.min(FOOTPRINT_BINS, to); ++b) {
+                        touched[b] = true;
+                    }
+                }
+            }
+            for (int b = 0; b < FOOTPRINT_BINS; ++b) {
+                if (touched[b]) {
+                    touches[b] += 1;
+                }
+            }
+        }
+        intervalStep = intervalStep + 1;
+        if (intervalStep == intervalSteps) {
+            // one footprint per interval, as a bitmask of the bins touched for most of it
+            int footprint = 0;
+            for (int b = 0; b < FOOTPRINT_BINS; ++b) {
+                if (2 * touches[b] > intervalSteps) {
+                    footprint |= 1 << b;
+                }
+                touches[b] = 0;
+            }
+            footprints.add(footprint);
+            intervalStep = 0;
+        }
+    }
+
+    public Outcome outcome() {
+        if (first == null) {
+            throw new IllegalStateException("No observation accumulated");
+        }
+        Outcome endpoints = new Outcome(new TreeMap<>((nOfSteps == 1) ? Map.of(firstT, first) : Map.of(firstT, first, lastT, last)));
+        Grid<Boolean> averagePosture = Grid.create(postureW, postureH, (x, y) -> 2 * postureCounts[y * postureW + x] > nOfSteps);
+        Map<Outcome.Component, List<Outcome.Mode>> spectra = new EnumMap<>(Outcome.Component.class);
+        for (Outcome.Component component : Outcome.Component.values()) {
+            GoertzelBank bank = banks.get(component);
+            double[] frequencies = bank.getFrequencies();
+            double[] strengths = bank.strengths();
+            List<Outcome.Mode> modes = new ArrayList<>(spectrumSize);
+            for (int b = 0; b < spectrumSize; ++b) {
+                modes.add(new Outcome.Mode(frequencies[b], strengths[b]));
+            }
+            spectra.put(component, List.copyOf(modes));
+        }
+        return CompactOutcome.of(endpoints, averagePosture, mainGait(footprints), spectrumMinFrequency, spectrumMaxFrequency, spectrumSize, spectra);
+    }
+
+    // the sequence of footprints whose non-overlapping repetitions cover most intervals, the shortest on ties, if repeated
+    static Outcome.Gait mainGait(List<Integer> footprints) {
+        int n = footprints.size();
+        long bestKey = 0L;
+        int bestLength = 0;
+        int bestCount = 0;
+        for (int length = 1; length <= Math.min(MAX_GAIT_LENGTH, n / 2); ++length) {
+            Map<Long, Integer> counts = new HashMap<>();
+            Map<Long, Integer> ends = new HashMap<>();
+            for (int i = 0; i + length <= n; ++i) {
+                long key = 0L;
+                for (int j = 0; j < length; ++j) {
+                    key |= ((long) footprints.get(i + j)) << (FOOTPRINT_BINS * j);
+                }
+                if (ends.getOrDefault(key, 0) <= i) {
+                    counts.merge(key, 1, Integer::sum);
+                    ends.put(key, i + length);
+                    int count = counts.get(key);
+                    if (count * length > bestCount * bestLength) {
+                        bestKey = key;
+                        bestLength = length;
+                        bestCount = count;
+                    }
+                }
+            }
+        }
+        if (bestCount < 2) {
+            return null;
+        }
+        List<Outcome.Footprint> gait = new ArrayList<>(bestLength);
+        for (int j = 0; j < bestLength; ++j) {
+            int footprint = (int) (bestKey >>> (FOOTPRINT_BINS * j)) & ((1 << FOOTPRINT_BINS) - 1);
+            boolean[] mask = new boolean[FOOTPRINT_BINS];
+            for (int b = 0; b < FOOTPRINT_BINS; ++b) {
+                mask[b] = (footprint & (1 << b)) != 0;
+            }
+            gait.add(new Outcome.Footprint(mask));
+        }
+        return new Outcome.Gait(
+                gait,
+                bestLength * FOOTPRINT_INTERVAL,
+                (double) (bestCount * bestLength) / n,
+                n * FOOTPRINT_INTERVAL,
+                (double) bestCount / (n / bestLength)
+        );
+    }
+
+}
@@ -0,0 +1,74 @@
+package it.units.erallab.factors;
+
+import com.google.common.collect.MapMaker;
+import it.units.erallab.hmsrobots.tasks.locomotion.Outcome;
+import it.units.erallab.hmsrobots.util.Grid;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * The derived quantities of an outcome (spectra, main gait and average posture) computed at most once and shared by
+ * speciators, descriptors and listeners. Values are attached to outcomes by identity and go away with them.
+ */
+public class OutcomeAnalysis {
+
+    // values must not refer to their outcome, or it would never be collected
+    private static final ConcurrentMap<Outcome, ConcurrentMap<String, Memo>> MEMOS = new MapMaker().weakKeys().makeMap();
+    // computation time of the values that were asked again
+    private static final LongAdder SAVED_NANOS = new LongAdder();
+
+    private static class Memo {
+        private final Object value;
+        private final long nanos;
+
+        private Memo(Object value, long nanos) {
+            this.value = value;
+            this.nanos = nanos;
+        }
+    }
+
+    private OutcomeAnalysis() {}
+
+    // total since the start, per event differences are computed by the listeners
+    public static double getSavedSeconds() {
+        return SAVED_NANOS.sum() / 1e9;
+    }
+
+    public static List<Outcome.Mode> getCenterPowerSpectrum(Outcome outcome, Outcome.Component component, double minFrequency, double maxFrequency, int nBins) {
+        return memo(outcome, spectrumKey(component, minFrequency, maxFrequency, nBins), () -> outcome.getCenterPowerSpectrum(component, minFrequency, maxFrequency, nBins));
+    }
+
+    // the same for equal ranges, however given (e.g., 0 and 0.0D)
+    public static String spectrumKey(Outcome.Component component, double minFrequency, double maxFrequency, int nBins) {
+        return String.join(":", "spectrum", component.name(), String.valueOf(minFrequency), String.valueOf(maxFrequency), String.valueOf(nBins));
+    }
+
+    public static Outcome.Gait getMainGait(Outcome outcome) {
+        return memo(outcome, "gait", outcome::getMainGait);
+    }
+
+    public static Grid<Boolean> getAveragePosture(Outcome outcome) {
+        return memo(outcome, "posture", outcome::getAveragePosture);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T memo(Outcome outcome, String key, Supplier<T> supplier) {
+        ConcurrentMap<String, Memo> memos = MEMOS.computeIfAbsent(outcome, o -> new ConcurrentHashMap<>());
+        Memo memo = memos.get(key);
+        if (memo != null) {
+            SAVED_NANOS.add(memo.nanos);
+            return (T) memo.value;
+        }
+        // concurrent first requests may both compute the value, only one is kept
+        long start = System.nanoTime();
+        T value = supplier.get();
+        Memo computed = new Memo(value, System.nanoTime() - start);
+        memo = memos.putIfAbsent(key, computed);
+        return (T) ((memo == null) ? computed : memo).value;
+    }
+
+}
@@ -0,0 +1,88 @@
+package it.units.erallab.factors;
+
+import it.units.erallab.hmsrobots.core.objects.Robot;
+import it.units.erallab.hmsrobots.tasks.locomotion.Outcome;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+
+public class OutcomeCache implements Function<Robot<?>, Outcome> {
+
+    private final Function<Robot<?>, Outcome> task;
+    private final GenotypeRegistry registry;
+    private final Map<List<Double>, CompletableFuture<Outcome>> cache;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    public OutcomeCache(Function<Robot<?>, Outcome> task, GenotypeRegistry registry, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException(String.format("Non-positive cache capacity provided: %d", capacity));
+        }
+        this.task = task;
+        this.registry = registry;
+        // access-ordered map, the least recently used genotype is evicted first
+        this.cache = new LinkedHashMap<>(capacity, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Double>, CompletableFuture<Outcome>> eldest) {
+                return this.size() > capacity;
+            }
+        };
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    @Override
+    public Outcome apply(Robot<?> robot) {
+        List<Double> genotype = this.registry.genotypeOf(robot);
+        if (genotype == null) {
+            this.misses.incrementAndGet();
+            return this.task.apply(robot);
+        }
+        CompletableFuture<Outcome> future;
+        boolean owner = false;
+        synchronized (this.cache) {
+            future = this.cache.get(genotype);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                this.cache.put(genotype, future);
+                owner = true;
+            }
+        }
+        if (!owner) {
+            // same genotype already evaluated or being evaluated by another thread
+            this.hits.incrementAndGet();
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                throw (e.getCause() instanceof RuntimeException) ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        this.misses.incrementAndGet();
+        try {
+            Outcome outcome = this.task.apply(robot);
+            future.complete(outcome);
+            return outcome;
+        } catch (RuntimeException e) {
+            synchronized (this.cache) {
+                this.cache.remove(genotype);
+            }
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+}
@@ -0,0 +1,34 @@
+package it.units.erallab.factors;
+
+import it.units.malelab.jgea.core.Individual;
+import it.units.malelab.jgea.core.evolver.Event;
+import it.units.malelab.jgea.core.listener.Listener;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compacts the outcomes of the individuals of the population at every event, once the listeners before it and the
+ * descriptors have read them: individuals surviving for many iterations, e.g., map-elites elites, only retain the
+ * summary of their episode.
+ */
+public class OutcomeCompactor<E extends Event<?, ?, ?>> implements Listener.Factory<E> {
+
+  private final LongAdder compacted = new LongAdder();
+
+  // total since the start, per event differences are computed by the listeners
+  public long getCompacted() {
+    return compacted.sum();
+  }
+
+  @Override
+  public Listener<E> build() {
+    return e -> {
+      for (Individual<?, ?, ?> individual : e.getOrderedPopulation().all()) {
+        if (individual.getFitness() instanceof CompactableOutcome && ((CompactableOutcome) individual.getFitness()).compact()) {
+          compacted.increment();
+        }
+      }
+    };
+  }
+
+}
@@ -0,0 +1,62 @@
+package it.units.erallab.factors;
+
+import it.units.malelab.jgea.core.evolver.Event;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Chooses which individuals of an event are logged, before anything is computed on them. Policies are {@code all},
+ * {@code every-N} (the whole population every N iterations and at the last one), {@code top-K} (the K best
+ * individuals of each iteration) and {@code reservoir-K} (K individuals of each iteration, uniformly at random).
+ */
+public class PopulationSampler {
+
+    private final String policy;
+    private final int n;
+    private final Predicate<? super Event<?, ?, ?>> last;
+    private final Random random;
+
+    public PopulationSampler(String spec, Predicate<? super Event<?, ?, ?>> last, long seed) {
+        String[] pieces = spec.split("-");
+        this.policy = pieces[0];
+        if (!List.of("all", "every", "top", "reservoir").contains(this.policy) || (pieces.length != 2 && !this.policy.equals("all"))) {
+            throw new IllegalArgumentException(String.format("Unknown sampling policy: %s", spec));
+        }
+        this.n = this.policy.equals("all") ? 0 : Integer.parseInt(pieces[1]);
+        if (!this.policy.equals("all") && this.n <= 0) {
+            throw new IllegalArgumentException(String.format("Non-positive sampling parameter provided: %d", this.n));
+        }
+        this.last = last;
+        this.random = new Random(seed);
+    }
+
+    public <K> Collection<K> sample(Event<?, ?, ?> event, Collection<K> population, Comparator<? super K> ranking) {
+        switch (this.policy) {
+            case "every":
+                return (event.getState().getIterations() % this.n == 0 || this.last.test(event)) ? population : List.of();
+            case "top":
+                List<K> sorted = new ArrayList<>(population);
+                sorted.sort(ranking);
+                return sorted.subList(0, Math.min(this.n, sorted.size()));
+            case "reservoir":
+                List<K> reservoir = new ArrayList<>(this.n);
+                int seen = 0;
+                for (K k : population) {
+                    if (seen < this.n) {
+                        reservoir.add(k);
+                    } else {
+                        int j = this.random.nextInt(seen + 1);
+                        if (j < this.n) {
+                            reservoir.set(j, k);
+                        }
+                    }
+                    seen = seen + 1;
+                }
+                return reservoir;
+            default:
+                return population;
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+package it.units.erallab.factors;
+
+import it.units.malelab.jgea.core.IndependentFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A factory whose first batch is made of the genotypes of a {@link Checkpoint}, so that a resumed run starts from the
+ * population of the interrupted one; later batches and single genotypes come from the given factory.
+ */
+public class ReplayFactory implements IndependentFactory<List<Double>> {
+
+  private final List<List<Double>> genotypes;
+  private final IndependentFactory<List<Double>> factory;
+  private boolean replayed;
+
+  public ReplayFactory(List<List<Double>> genotypes, IndependentFactory<List<Double>> factory) {
+    this.genotypes = genotypes;
+    this.factory = factory;
+    this.replayed = false;
+  }
+
+  // the first n genotypes of the checkpoint, without consuming the random generator unless there are less than n
+  @Override
+  public synchronized List<List<Double>> build(int n, Random random) {
+    if (!replayed) {
+      replayed = true;
+      List<List<Double>> built = new ArrayList<>(genotypes.subList(0, Math.min(n, genotypes.size())));
+      if (built.size() < n) {
+        built.addAll(factory.build(n - built.size(), random));
+      }
+      return built;
+    }
+    return factory.build(n, random);
+  }
+
+  @Override
+  public List<Double> build(Random random) {
+    return factory.build(random);
+  }
+
+}
@@ -0,0 +1,112 @@
+package it.units.erallab.factors;
+
+import it.units.malelab.jgea.core.evolver.AbstractIterativeEvolver;
+import it.units.malelab.jgea.core.evolver.Event;
+import it.units.malelab.jgea.core.listener.Listener;
+
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Makes a run resumed from a {@link Checkpoint} look like the continuation of the original one: the counters of the
+ * events are shifted by the ones of the checkpoint. The first event of the resumed run is the one of the checkpoint,
+ * with its population evaluated again, and it is dropped by the listeners that already got it.
+ */
+public class Resumption {
+
+  private final Checkpoint checkpoint;
+  // iterations, births, fitness evaluations and elapsed millis to add, computed at the first event
+  private long[] offsets;
+
+  public Resumption(Checkpoint checkpoint) {
+    this.checkpoint = checkpoint;
+  }
+
+  @SuppressWarnings("unchecked")
+  public synchronized <E extends Event<?, ?, ?>> E shift(E event) {
+    AbstractIterativeEvolver.State state = event.getState().copy();
+    if (offsets == null) {
+      offsets = new long[]{
+          checkpoint.getIterations() - state.getIterations(),
+          checkpoint.getBirths() - state.getBirths(),
+          checkpoint.getFitnessEvaluations() - state.getFitnessEvaluations(),
+          checkpoint.getElapsedMillis() - state.getElapsedMillis()
+      };
+    }
+    increment(state::incIterations, offsets[0]);
+    increment(state::incBirths, offsets[1]);
+    increment(state::incFitnessEvaluations, offsets[2]);
+    state.setElapsedMillis(state.getElapsedMillis() + offsets[3]);
+    return (E) new Event<>(state, event.getOrderedPopulation());
+  }
+
+  // counters are incremented by ints, hence long amounts are split
+  private static void increment(IntConsumer counter, long amount) {
+    while (amount != 0) {
+      int step = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, amount));
+      counter.accept(step);
+      amount = amount - step;
+    }
+  }
+
+  public <E extends Event<?, ?, ?>> Predicate<E> shift(Predicate<? super E> condition) {
+    return e -> condition.test(shift(e));
+  }
+
+  public <E extends Event<?, ?, ?>> Listener.Factory<E> shift(Listener.Factory<E> factory) {
+    return new Listener.Factory<>() {
+      @Override
+      public Listener<E> build() {
+        Listener<E> listener = factory.build();
+        return new Listener<>() {
+          @Override
+          public void listen(E e) {
+            listener.listen(shift(e));
+          }
+
+          @Override
+          public void done() {
+            listener.done();
+          }
+        };
+      }
+
+      @Override
+      public void shutdown() {
+        factory.shutdown();
+      }
+    };
+  }
+
+  public static <E> Listener.Factory<E> skipFirst(Listener.Factory<E> factory) {
+    return new Listener.Factory<>() {
+      @Override
+      public Listener<E> build() {
+        Listener<E> listener = factory.build();
+        return new Listener<>() {
+          private boolean first = true;
+
+          @Override
+          public void listen(E e) {
+            if (first) {
+              first = false;
+              return;
+            }
+            listener.listen(e);
+          }
+
+          @Override
+          public void done() {
+            listener.done();
+          }
+        };
+      }
+
+      @Override
+      public void shutdown() {
+        factory.shutdown();
+      }
+    };
+  }
+
+}
@@ -4,9 +4,17 @@ import it.units.erallab.hmsrobots.core.controllers.MultiLayerPerceptron;
 import it.units.erallab.hmsrobots.core.objects.Robot;
 import it.units.erallab.hmsrobots.core.sensors.*;
 
+import it.units.erallab.hmsrobots.util.Grid;
+import it.units.erallab.hmsrobots.util.Utils;
+
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
+import java.util.function.Supplier;
+import org.apache.commons.lang3.SerializationUtils;
 
 
 public abstract class RobotMapper implements Function<List<Double>, Robot<?>> {
@@ -17,21 +25,101 @@ public abstract class RobotMapper implements Function<List<Double>, Robot<?>> {
     protected final int width;
     protected final int height;
     protected final List<Sensor> sensors;
+    protected final Supplier<List<Sensor>> sensorsFactory;
     protected final int[] innerNeurons;
     protected final int signals;
     protected static final double DIRECT_THRESHOLD = 0.0D;
     protected static final double GAUSSIAN_THRESHOLD = 0.5D;
     protected static final int NUM_GAUSSIANS = 5;
+    protected static final int BODY_CACHE_SIZE = 65536;
+    // pruned bodies, as the indexes of their cells, keyed on the bitmask of the occupancy grid, least recently used first
+    private final Map<Long, int[]> bodyCache;
+    private final AtomicLong bodyCacheHits;
+    private final AtomicLong bodyCacheMisses;
 
     public RobotMapper(boolean heterogeneous, boolean position, boolean direct, int width, int height, List<Sensor> sensors, int[] innerNeurons, int signals) {
+        this(heterogeneous, position, direct, width, height, cloning(sensors), innerNeurons, signals);
+    }
+
+    public RobotMapper(boolean heterogeneous, boolean position, boolean direct, int width, int height, Supplier<List<Sensor>> sensorsFactory, int[] innerNeurons, int signals) {
         this.heterogeneous = heterogeneous;
         this.hasPositionSensor = position;
         this.direct = direct;
         this.width = width;
         this.height = height;
-        this.sensors = sensors;
+        this.sensors = sensorsFactory.get();
+        this.sensorsFactory = sensorsFactory;
         this.innerNeurons = innerNeurons;
         this.signals = signals;
+        this.bodyCache = new LinkedHashMap<>(BODY_CACHE_SIZE, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+                return this.size() > BODY_CACHE_SIZE;
+            }
+        };
+        this.bodyCacheHits = new AtomicLong();
+        this.bodyCacheMisses = new AtomicLong();
+    }
+
+    // sensors are stateful: every voxel needs its own copy, here obtained through (slow) serialization
+    protected static Supplier<List<Sensor>> cloning(List<Sensor> sensors) {
+        ArrayList<Sensor> prototype = new ArrayList<>(sensors);
+        return () -> SerializationUtils.clone(prototype);
+    }
+
+    // indexes (x + y * width) of the cells of the largest connected component, or of (0,0) if the body is empty
+    protected int[] bodyCells(boolean[] occupancy) {
+        if (!this.usesBodyCache()) {
+            return largestConnectedCells(occupancy);
+        }
+        long key = 0L;
+        for (int c = 0; c < occupancy.length; ++c) {
+            if (occupancy[c]) {
+                key |= 1L << c;
+            }
+        }
+        int[] cells;
+        synchronized (this.bodyCache) {
+            cells = this.bodyCache.get(key);
+        }
+        if (cells != null) {
+            this.bodyCacheHits.incrementAndGet();
+            return cells;
+        }
+        // pruned out of the lock: concurrent misses on the same key compute the same cells
+        this.bodyCacheMisses.incrementAndGet();
+        cells = largestConnectedCells(occupancy);
+        synchronized (this.bodyCache) {
+            this.bodyCache.put(key, cells);
+        }
+        return cells;
+    }
+
+    // bodies are cached only when their occupancy fits in the bits of a long
+    public boolean usesBodyCache() {
+        return this.width * this.height <= Long.SIZE;
+    }
+
+    private int[] largestConnectedCells(boolean[] occupancy) {
+        Grid<Boolean> shape = Grid.create(this.width, this.height, (x, y) -> occupancy[x + y * this.width]);
+        if (shape.values().stream().noneMatch(b -> b)) {
+            shape.set(0, 0, true); // if the body is empty put a voxel (0,0)
+        }
+        // retain largest connected component
+        Grid<Boolean> connected = Utils.gridLargestConnected(shape, b -> b);
+        return connected.stream()
+                .filter(e -> Boolean.TRUE.equals(e.getValue()))
+                .mapToInt(e -> e.getX() + e.getY() * this.width)
+                .sorted()
+                .toArray();
+    }
+
+    public long getBodyCacheHits() {
+        return this.bodyCacheHits.get();
+    }
+
+    public long getBodyCacheMisses() {
+        return this.bodyCacheMisses.get();
     }
 
     public static int getMorphologySize(boolean direct, int w, int h) {
@@ -66,6 +154,12 @@ public abstract class RobotMapper implements Function<List<Double>, Robot<?>> {
         return new DoubleMapper(controller.equals("heterogeneous"), morphology.equals("direct"), width, height, sensors, innerNeurons, signals);
     }
 
+    public static RobotMapper createMapper(String representation, int width, int height, String sensorConfig, int[] innerNeurons, int signals) {
+        String controller = representation.split("-")[1];
+        String morphology = representation.split("-")[0];
+        return new DoubleMapper(controller.equals("heterogeneous"), morphology.equals("direct"), width, height, () -> getSensors(sensorConfig), innerNeurons, signals);
+    }
+
     public static Robot<?> createMapperAndApplyFromSerialized(List<Double> serialized, int width, int height, List<Sensor> sensors, int[] innerNeurons, int signals) {
         if (serialized.size() == getGenotypeSize(true, false, true, sensors, innerNeurons, signals, width, height)) {
             return (new DoubleMapper(true, true, width, height, sensors, innerNeurons, signals)).apply(serialized);
@@ -0,0 +1,106 @@
+package it.units.erallab.factors;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs the batches of evaluations of {@code invokeAll} on a delegate executor and measures their makespan. When a
+ * {@link CostModel} is given, the tasks of a batch are all submitted at once, on a delegate with enough threads, and
+ * the model starts their episodes from the most to the least expensive one, so that the batch does not end with a
+ * long episode started last; the time spent waiting for the start is not counted in the durations of the tasks.
+ */
+public class SchedulingExecutor extends AbstractExecutorService {
+
+    private final ExecutorService delegate;
+    private final CostModel costModel;
+    private final int nOfThreads;
+    private volatile double lastMakespan;
+    private volatile double lastLowerBound;
+
+    public SchedulingExecutor(ExecutorService delegate, CostModel costModel, int nOfThreads) {
+        this.delegate = delegate;
+        this.costModel = costModel;
+        this.nOfThreads = nOfThreads;
+        this.lastMakespan = Double.NaN;
+        this.lastLowerBound = Double.NaN;
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+        List<Callable<T>> ordered = new ArrayList<>(tasks);
+        if (this.costModel != null) {
+            this.costModel.expect(ordered.size());
+        }
+        double[] durations = new double[ordered.size()];
+        Map<Callable<T>, Future<T>> futures = new IdentityHashMap<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < ordered.size(); ++i) {
+            Callable<T> task = ordered.get(i);
+            Callable<T> submitted = (this.costModel != null) ? this.costModel.batched(task) : task;
+            int index = i;
+            futures.put(task, this.delegate.submit(() -> {
+                long taskStart = System.nanoTime();
+                try {
+                    return submitted.call();
+                } finally {
+                    long waited = (this.costModel != null) ? this.costModel.takeWaitedNanos() : 0L;
+                    durations[index] = (System.nanoTime() - taskStart - waited) / 1e9;
+                }
+            }));
+        }
+        // results are returned in the order of the given tasks
+        List<Future<T>> results = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            Future<T> future = futures.get(task);
+            try {
+                future.get();
+            } catch (ExecutionException | CancellationException e) {
+                //ignore, the caller gets it from the future
+            }
+            results.add(future);
+        }
+        // no schedule can be shorter than the longest evaluation or than the evaluations perfectly spread over the threads
+        this.lastMakespan = (System.nanoTime() - start) / 1e9;
+        this.lastLowerBound = Math.max(Arrays.stream(durations).max().orElse(0.0D), Arrays.stream(durations).sum() / this.nOfThreads);
+        return results;
+    }
+
+    public double getLastMakespan() {
+        return this.lastMakespan;
+    }
+
+    public double getLastLowerBound() {
+        return this.lastLowerBound;
+    }
+
+    @Override
+    public void shutdown() {
+        this.delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return this.delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return this.delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return this.delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return this.delegate.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        this.delegate.execute(command);
+    }
+
+}
@@ -0,0 +1,165 @@
+package it.units.erallab.factors;
+
+import com.google.common.base.Stopwatch;
+import it.units.malelab.jgea.core.Factory;
+import it.units.malelab.jgea.core.Individual;
+import it.units.malelab.jgea.core.evolver.AbstractIterativeEvolver;
+import it.units.malelab.jgea.core.evolver.Event;
+import it.units.malelab.jgea.core.evolver.Evolver;
+import it.units.malelab.jgea.core.listener.Listener;
+import it.units.malelab.jgea.core.operator.GeneticOperator;
+import it.units.malelab.jgea.core.order.DAGPartiallyOrderedCollection;
+import it.units.malelab.jgea.core.order.PartialComparator;
+import it.units.malelab.jgea.core.order.PartiallyOrderedCollection;
+import it.units.malelab.jgea.core.selector.Selector;
+import it.units.malelab.jgea.core.util.Misc;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Steady-state counterpart of the standard evolver: there are up to {@code nOfThreads} evaluations in flight and,
+ * as soon as one completes, the new individual enters the population, the worst individuals are removed and a new
+ * offspring is submitted. Births are counted one at a time, and an event (one iteration) is emitted every
+ * {@code populationSize} births, and only then, hence a {@code Births} stop condition stops after the same number of births as
+ * the generational version. An offspring is submitted only if the stop condition is not met once the evaluations
+ * already in flight are done, and evaluations still in flight at the stop are waited for, so that no episode keeps
+ * running after {@link #solve} returns.
+ */
+public class SteadyStateEvolver<S, F> implements Evolver<List<Double>, S, F> {
+
+  private static final Logger L = Logger.getLogger(SteadyStateEvolver.class.getName());
+
+  private final Function<? super List<Double>, ? extends S> solutionMapper;
+  private final Factory<? extends List<Double>> genotypeFactory;
+  private final PartialComparator<? super Individual<List<Double>, S, F>> individualComparator;
+  private final int populationSize;
+  private final Map<GeneticOperator<List<Double>>, Double> operators;
+  private final Selector<? super Individual<? super List<Double>, ? super S, ? super F>> parentSelector;
+  private final Selector<? super Individual<? super List<Double>, ? super S, ? super F>> unsurvivalSelector;
+  private final int nOfThreads;
+
+  public SteadyStateEvolver(Function<? super List<Double>, ? extends S> solutionMapper, Factory<? extends List<Double>> genotypeFactory, PartialComparator<? super Individual<List<Double>, S, F>> individualComparator, int populationSize, Map<GeneticOperator<List<Double>>, Double> operators, Selector<? super Individual<? super List<Double>, ? super S, ? super F>> parentSelector, Selector<? super Individual<? super List<Double>, ? super S, ? super F>> unsurvivalSelector, int nOfThreads) {
+    this.solutionMapper = solutionMapper;
+    this.genotypeFactory = genotypeFactory;
+    this.individualComparator = individualComparator;
+    this.populationSize = populationSize;
+    this.operators = operators;
+    this.parentSelector = parentSelector;
+    this.unsurvivalSelector = unsurvivalSelector;
+    this.nOfThreads = nOfThreads;
+  }
+
+  @Override
+  public Collection<S> solve(Function<S, F> fitnessFunction, Predicate<? super Event<List<Double>, S, F>> stopCondition, Random random, ExecutorService executor, Listener<? super Event<List<Double>, S, F>> listener) throws InterruptedException, ExecutionException {
+    AbstractIterativeEvolver.State state = new AbstractIterativeEvolver.State();
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    PartiallyOrderedCollection<Individual<List<Double>, S, F>> population = new DAGPartiallyOrderedCollection<>(initPopulation(fitnessFunction, random, executor, state), individualComparator);
+    L.fine(String.format("Population initialized: %d individuals", population.size()));
+    CompletionService<Individual<List<Double>, S, F>> completionService = new ExecutorCompletionService<>(executor);
+    Set<Future<Individual<List<Double>, S, F>>> inFlight = new HashSet<>();
+    // offspring already built but not yet submitted, for operators producing more than one child
+    Deque<List<Double>> pending = new ArrayDeque<>();
+    int births = 0;
+    try {
+      while (true) {
+        // events only at iteration boundaries, while the stop condition is also checked whenever nothing is in flight
+        if (births % populationSize == 0 || inFlight.isEmpty()) {
+          state.setElapsedMillis(stopwatch.elapsed(TimeUnit.MILLISECONDS));
+          Event<List<Double>, S, F> event = new Event<>(state, population);
+          if (births % populationSize == 0) {
+            listener.listen(event);
+          }
+          if (stopCondition.test(event)) {
+            L.fine(String.format("Stop condition met: %s", stopCondition));
+            break;
+          }
+        }
+        while (inFlight.size() < nOfThreads && !stopsAfter(inFlight.size(), stopCondition, state, stopwatch, population)) {
+          inFlight.add(submit(nextGenotype(population, pending, random), completionService, fitnessFunction, state));
+        }
+        if (inFlight.isEmpty()) {
+          // the stop condition will be met by the births already counted
+          break;
+        }
+        Future<Individual<List<Double>, S, F>> done = completionService.take();
+        inFlight.remove(done);
+        population.add(done.get());
+        while (population.size() > populationSize) {
+          population.remove(unsurvivalSelector.select(population, random));
+        }
+        births = births + 1;
+        state.incBirths(1);
+        state.incFitnessEvaluations(1);
+        if (births % populationSize == 0) {
+          state.incIterations(1);
+        }
+      }
+      // not counted, but waited for: episodes cannot be interrupted
+      for (Future<Individual<List<Double>, S, F>> future : inFlight) {
+        future.get();
+      }
+      if (!inFlight.isEmpty()) {
+        L.fine(String.format("%d evaluations beyond the stop condition discarded", inFlight.size()));
+      }
+    } finally {
+      // only effective on failures, when evaluations not yet started are dropped
+      inFlight.forEach(f -> f.cancel(false));
+    }
+    listener.done();
+    return population.firsts().stream()
+        .map(Individual::getSolution)
+        .collect(Collectors.toList());
+  }
+
+  // true if the stop condition is met once the evaluations in flight are done
+  private boolean stopsAfter(int nOfInFlight, Predicate<? super Event<List<Double>, S, F>> stopCondition, AbstractIterativeEvolver.State state, Stopwatch stopwatch, PartiallyOrderedCollection<Individual<List<Double>, S, F>> population) {
+    AbstractIterativeEvolver.State projected = state.copy();
+    projected.incBirths(nOfInFlight);
+    projected.incFitnessEvaluations(nOfInFlight);
+    projected.setElapsedMillis(stopwatch.elapsed(TimeUnit.MILLISECONDS));
+    return stopCondition.test(new Event<>(projected, population));
+  }
+
+  private List<Double> nextGenotype(PartiallyOrderedCollection<Individual<List<Double>, S, F>> population, Deque<List<Double>> pending, Random random) {
+    if (pending.isEmpty()) {
+      GeneticOperator<List<Double>> operator = Misc.pickRandomly(operators, random);
+      List<List<Double>> parents = new ArrayList<>(operator.arity());
+      for (int j = 0; j < operator.arity(); j++) {
+        parents.add(parentSelector.select(population, random).getGenotype());
+      }
+      pending.addAll(operator.apply(parents, random));
+    }
+    return pending.poll();
+  }
+
+  private Future<Individual<List<Double>, S, F>> submit(List<Double> genotype, CompletionService<Individual<List<Double>, S, F>> completionService, Function<S, F> fitnessFunction, AbstractIterativeEvolver.State state) {
+    long birthIteration = state.getIterations();
+    return completionService.submit(() -> evaluate(genotype, fitnessFunction, birthIteration));
+  }
+
+  private Individual<List<Double>, S, F> evaluate(List<Double> genotype, Function<S, F> fitnessFunction, long birthIteration) {
+    S solution = solutionMapper.apply(genotype);
+    F fitness = fitnessFunction.apply(solution);
+    return new Individual<>(genotype, solution, fitness, birthIteration);
+  }
+
+  private Collection<Individual<List<Double>, S, F>> initPopulation(Function<S, F> fitnessFunction, Random random, ExecutorService executor, AbstractIterativeEvolver.State state) throws ExecutionException, InterruptedException {
+    List<Callable<Individual<List<Double>, S, F>>> tasks = new ArrayList<>();
+    for (List<Double> genotype : genotypeFactory.build(populationSize, random)) {
+      tasks.add(() -> evaluate(genotype, fitnessFunction, 0));
+    }
+    List<Individual<List<Double>, S, F>> individuals = new ArrayList<>();
+    for (Future<Individual<List<Double>, S, F>> future : executor.invokeAll(tasks)) {
+      individuals.add(future.get());
+    }
+    state.incBirths(individuals.size());
+    state.incFitnessEvaluations(individuals.size());
+    return individuals;
+  }
+
+}
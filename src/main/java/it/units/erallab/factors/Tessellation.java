@@ -0,0 +1,16 @@
+package it.units.erallab.factors;
+
+import java.util.List;
+
+/**
+ * A partition of the descriptor space in a fixed number of cells, identified by integers in [0, size()).
+ */
+public interface Tessellation {
+
+  int size();
+
+  int cell(List<Double> descriptor);
+
+  int[] neighbours(int cell);
+
+}
@@ -0,0 +1,36 @@
+package it.units.erallab.factors;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+
+public class UtilizationMonitor<T, R> implements Function<T, R> {
+
+    private final Function<T, R> task;
+    private final int nOfThreads;
+    private final long startNanos;
+    private final LongAdder busyNanos;
+
+    public UtilizationMonitor(Function<T, R> task, int nOfThreads) {
+        this.task = task;
+        this.nOfThreads = nOfThreads;
+        this.startNanos = System.nanoTime();
+        this.busyNanos = new LongAdder();
+    }
+
+    @Override
+    public R apply(T t) {
+        long start = System.nanoTime();
+        try {
+            return this.task.apply(t);
+        } finally {
+            this.busyNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    // share of the available thread time spent inside the task since the creation of the monitor
+    public double getUtilization() {
+        return this.busyNanos.sum() / ((double) (System.nanoTime() - this.startNanos) * this.nOfThreads);
+    }
+
+}
@@ -67,6 +67,8 @@ public class VideoMaker {
     int frameRate = i(a(args, "frameRate", "30"));
     String encoderName = a(args, "encoder", VideoUtils.EncoderFacility.FFMPEG_LARGE.name());
     SerializationUtils.Mode mode = SerializationUtils.Mode.valueOf(a(args, "deserializationMode", SerializationUtils.Mode.GZIPPED_JSON.name()).toUpperCase());
+    String genotypeStoreFileName = a(args, "genotypeStore", null);
+    GenotypeStore store = (genotypeStoreFileName == null) ? null : GenotypeStore.open(new File(genotypeStoreFileName));
     //read data
     Reader reader = null;
     List<CSVRecord> records = null;
@@ -130,7 +132,7 @@ public class VideoMaker {
             (x, y) -> rawGrid.get(x, y).isEmpty() ? null : Pair.of(
                     xValues.get(x) + " " + yValues.get(y),
                     RobotUtils.buildRobotTransformation(transformationName, new Random(0))
-                            .apply(SerializationUtils.deserialize(rawGrid.get(x, y).get(0), Robot.class, mode))
+                            .apply(robotOf(rawGrid.get(x, y).get(0), store, mode))
             )
     );
     //prepare problem
@@ -199,12 +201,17 @@ public class VideoMaker {
     List<CSVRecord> records;
     CSVParser csvParser = CSVFormat.DEFAULT.withDelimiter(';').withFirstRecordAsHeader().parse(reader);
     records = csvParser.getRecords();
+    // runs with a genotype store only log the hash of each genotype
+    String column = csvParser.getHeaderNames().stream()
+            .filter(c -> c.endsWith("solution→serialized") || c.endsWith("genotype.hash"))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException(String.format("No serialized robot column in %s", file)));
     String robot;
     if (file.contains(".all.")) {
-      robot = records.get(new Random(0).nextInt(records.size())).get("solution→serialized");
+      robot = records.get(new Random(0).nextInt(records.size())).get(column);
     }
     else {
-      robot = records.get(records.size() - 1).get("best→solution→serialized");
+      robot = records.get(records.size() - 1).get(column);
     }
     reader.close();
     writer.write("x;y;serialized\n");
@@ -212,4 +219,16 @@ public class VideoMaker {
     writer.close();
   }
 
+  // either a serialized robot or, if a store is given, the hash of its genotype
+  public static Robot<?> robotOf(String value, GenotypeStore store, SerializationUtils.Mode mode) {
+    if (store == null) {
+      return SerializationUtils.deserialize(value, Robot.class, mode);
+    }
+    try {
+      return store.robot(value);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,226 @@
+package it.units.erallab.factors;
+
+import it.units.malelab.jgea.core.evolver.speciation.SpeciatedEvolver;
+import it.units.malelab.jgea.core.order.PartiallyOrderedCollection;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * K-means speciator starting from the centroids of the previous generation, which are usually close to the new ones,
+ * and stopping as soon as no point changes cluster. Points are kept in a single row-major matrix and assigned to
+ * centroids in parallel when the matrix is large enough. The first generation is initialized with k-means++.
+ */
+public class WarmKMeansSpeciator<T> implements MonitoredSpeciator<T>, Checkpointable {
+
+    private static class Snapshot implements Serializable {
+        private final double[] centroids;
+        private final byte[] random;
+
+        private Snapshot(double[] centroids, byte[] random) {
+            this.centroids = centroids;
+            this.random = random;
+        }
+    }
+
+    // points x centroids x dimensions below which assignment is not worth parallelizing
+    private static final long PARALLEL_THRESHOLD = 100_000L;
+
+    private final int k;
+    private final int maxIterations;
+    private final Function<T, double[]> converter;
+    private Random random;
+    private double[] centroids;
+    private double lastMillis;
+    private int lastIterations;
+
+    public WarmKMeansSpeciator(int k, int maxIterations, Function<T, double[]> converter, long seed) {
+        this.k = k;
+        this.maxIterations = maxIterations;
+        this.converter = converter;
+        this.random = new Random(seed);
+        this.centroids = null;
+        this.lastMillis = Double.NaN;
+        this.lastIterations = 0;
+    }
+
+    @Override
+    public Collection<SpeciatedEvolver.Species<T>> speciate(PartiallyOrderedCollection<T> population) {
+        long start = System.nanoTime();
+        List<T> all = new ArrayList<>(population.all());
+        int n = all.size();
+        double[] points = null;
+        for (int i = 0; i < n; ++i) {
+            double[] point = converter.apply(all.get(i));
+            if (points == null) {
+                points = new double[n * point.length];
+            }
+            System.arraycopy(point, 0, points, i * point.length, point.length);
+        }
+        List<SpeciatedEvolver.Species<T>> species = new ArrayList<>();
+        if (n == 0) {
+            return species;
+        }
+        int d = points.length / n;
+        if (centroids == null || centroids.length != k * d) {
+            centroids = initCentroids(points, n, d);
+        }
+        int[] assignments = new int[n];
+        Arrays.fill(assignments, -1);
+        double[] distances = new double[n];
+        boolean parallel = (long) n * k * d > PARALLEL_THRESHOLD;
+        int iterations = 0;
+        while (iterations < maxIterations) {
+            iterations = iterations + 1;
+            if (assign(points, n, d, assignments, distances, parallel) == 0) {
+                break;
+            }
+            updateCentroids(points, n, d, assignments, distances);
+        }
+        // one species per non-empty cluster, represented by its point closest to the centroid
+        for (int c = 0; c < k; ++c) {
+            List<T> elements = new ArrayList<>();
+            int representative = -1;
+            for (int i = 0; i < n; ++i) {
+                if (assignments[i] == c) {
+                    elements.add(all.get(i));
+                    if (representative < 0 || distances[i] < distances[representative]) {
+                        representative = i;
+                    }
+                }
+            }
+            if (!elements.isEmpty()) {
+                species.add(new SpeciatedEvolver.Species<>(elements, all.get(representative)));
+            }
+        }
+        synchronized (this) {
+            lastIterations = iterations;
+            lastMillis = (System.nanoTime() - start) / 1e6;
+        }
+        return species;
+    }
+
+    // number of points whose cluster changed; assignments start at -1 for the first iteration
+    private int assign(double[] points, int n, int d, int[] assignments, double[] distances, boolean parallel) {
+        IntStream indexes = IntStream.range(0, n);
+        if (parallel) {
+            indexes = indexes.parallel();
+        }
+        return indexes.map(i -> {
+            int closest = 0;
+            double closestDistance = Double.POSITIVE_INFINITY;
+            for (int c = 0; c < k; ++c) {
+                double distance = squaredDistance(points, i * d, centroids, c * d, d);
+                if (distance < closestDistance) {
+                    closest = c;
+                    closestDistance = distance;
+                }
+            }
+            distances[i] = closestDistance;
+            if (assignments[i] != closest) {
+                assignments[i] = closest;
+                return 1;
+            }
+            return 0;
+        }).sum();
+    }
+
+    private void updateCentroids(double[] points, int n, int d, int[] assignments, double[] distances) {
+        double[] sums = new double[k * d];
+        int[] counts = new int[k];
+        for (int i = 0; i < n; ++i) {
+            int c = assignments[i];
+            counts[c] = counts[c] + 1;
+            for (int j = 0; j < d; ++j) {
+                sums[c * d + j] += points[i * d + j];
+            }
+        }
+        for (int c = 0; c < k; ++c) {
+            if (counts[c] == 0) {
+                // an empty cluster takes the point farthest from its centroid
+                int farthest = 0;
+                for (int i = 1; i < n; ++i) {
+                    if (distances[i] > distances[farthest]) {
+                        farthest = i;
+                    }
+                }
+                System.arraycopy(points, farthest * d, centroids, c * d, d);
+                distances[farthest] = 0d;
+                continue;
+            }
+            for (int j = 0; j < d; ++j) {
+                centroids[c * d + j] = sums[c * d + j] / counts[c];
+            }
+        }
+    }
+
+    private double[] initCentroids(double[] points, int n, int d) {
+        double[] initial = new double[k * d];
+        double[] distances = new double[n];
+        int first = random.nextInt(n);
+        System.arraycopy(points, first * d, initial, 0, d);
+        for (int i = 0; i < n; ++i) {
+            distances[i] = squaredDistance(points, i * d, initial, 0, d);
+        }
+        for (int c = 1; c < k; ++c) {
+            double sum = 0d;
+            for (double distance : distances) {
+                sum = sum + distance;
+            }
+            int chosen = 0;
+            if (sum > 0d) {
+                double threshold = random.nextDouble() * sum;
+                while (chosen < n - 1 && threshold >= distances[chosen]) {
+                    threshold = threshold - distances[chosen];
+                    chosen = chosen + 1;
+                }
+            } else {
+                chosen = random.nextInt(n);
+            }
+            System.arraycopy(points, chosen * d, initial, c * d, d);
+            for (int i = 0; i < n; ++i) {
+                distances[i] = Math.min(distances[i], squaredDistance(points, i * d, initial, c * d, d));
+            }
+        }
+        return initial;
+    }
+
+    private static double squaredDistance(double[] a, int aFrom, double[] b, int bFrom, int d) {
+        double sum = 0d;
+        for (int j = 0; j < d; ++j) {
+            double diff = a[aFrom + j] - b[bFrom + j];
+            sum = sum + diff * diff;
+        }
+        return sum;
+    }
+
+    // the centroids of the last speciation, the starting point of the next one, and the generator for the first one
+    @Override
+    public Serializable checkpoint() {
+        return new Snapshot((centroids == null) ? null : centroids.clone(), Checkpoint.serialize(random));
+    }
+
+    @Override
+    public void resume(Serializable checkpoint) {
+        Snapshot snapshot = (Snapshot) checkpoint;
+        centroids = snapshot.centroids;
+        random = Checkpoint.deserialize(snapshot.random);
+    }
+
+    @Override
+    public synchronized double getLastMillis() {
+        return lastMillis;
+    }
+
+    @Override
+    public synchronized int getLastIterations() {
+        return lastIterations;
+    }
+
+}
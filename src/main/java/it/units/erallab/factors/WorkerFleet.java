@@ -0,0 +1,180 @@
+package it.units.erallab.factors;
+
+import it.units.erallab.hmsrobots.core.objects.Robot;
+import it.units.erallab.hmsrobots.tasks.locomotion.Outcome;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Evaluates robots in separate {@link EvaluationWorker} processes on localhost: the genotype of the robot is sent to
+ * a free worker, which rebuilds the robot, runs the episode and sends back its {@link CompactOutcome}. A worker not
+ * answering within the timeout is considered hung and replaced.
+ */
+public class WorkerFleet implements Function<Robot<?>, Outcome>, Closeable {
+
+  private static final Logger L = Logger.getLogger(WorkerFleet.class.getName());
+
+  private class Connection implements Closeable {
+    private final Process process;
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+
+    public Connection() throws IOException {
+      List<String> command = new ArrayList<>(List.of(
+          Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+          "-cp", System.getProperty("java.class.path"),
+          EvaluationWorker.class.getName()
+      ));
+      command.addAll(workerArgs);
+      process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+      BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+      String line = reader.readLine();
+      if (line == null) {
+        process.destroyForcibly();
+        throw new IOException("Worker exited before communicating its port");
+      }
+      // whatever the worker prints afterwards is consumed, or it would block once the pipe is full
+      Thread drainer = new Thread(() -> reader.lines().forEach(l -> L.fine(String.format("Worker output: %s", l))));
+      drainer.setDaemon(true);
+      drainer.start();
+      socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(line.trim()));
+      socket.setSoTimeout(timeoutMillis);
+      out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    }
+
+    public Outcome evaluate(double[] genotype) throws IOException {
+      out.writeInt(genotype.length);
+      for (double v : genotype) {
+        out.writeDouble(v);
+      }
+      out.flush();
+      return CompactOutcome.read(in);
+    }
+
+    @Override
+    public void close() {
+      try {
+        out.writeInt(-1);
+        out.flush();
+        socket.close();
+      } catch (IOException e) {
+        //ignore
+      }
+      process.destroy();
+    }
+  }
+
+  private final GenotypeRegistry registry;
+  private final List<String> workerArgs;
+  private final int timeoutMillis;
+  // only healthy connections are idle
+  private final BlockingQueue<Connection> idle;
+  private final List<Connection> connections;
+  // workers that could not be restarted are not replaced again
+  private final AtomicInteger alive;
+
+  public WorkerFleet(int nOfWorkers, GenotypeRegistry registry, List<String> workerArgs, double timeout) throws IOException {
+    this.registry = registry;
+    this.workerArgs = workerArgs;
+    this.timeoutMillis = (int) Math.round(timeout * 1000d);
+    this.idle = new ArrayBlockingQueue<>(nOfWorkers);
+    this.connections = new ArrayList<>();
+    for (int i = 0; i < nOfWorkers; ++i) {
+      Connection connection = new Connection();
+      connections.add(connection);
+      idle.add(connection);
+    }
+    this.alive = new AtomicInteger(nOfWorkers);
+    L.info(String.format("Started %d evaluation workers", nOfWorkers));
+  }
+
+  @Override
+  public Outcome apply(Robot<?> robot) {
+    List<Double> genotype = registry.genotypeOf(robot);
+    if (genotype == null) {
+      throw new IllegalArgumentException("Unknown robot: it has not been built through the registry mapper");
+    }
+    double[] values = DoubleVector.of(genotype).values();
+    Connection connection = take();
+    IOException failure = null;
+    // the worker crashed, hung up or timed out: replace it and retry once
+    for (int attempt = 0; attempt < 2; ++attempt) {
+      try {
+        Outcome outcome = connection.evaluate(values);
+        idle.add(connection);
+        return outcome;
+      } catch (IOException e) {
+        L.warning(String.format("Restarting evaluation worker due to %s", e));
+        failure = e;
+        connection = replace(connection);
+        if (connection == null) {
+          break;
+        }
+      }
+    }
+    if (connection != null) {
+      idle.add(connection);
+    }
+    throw new UncheckedIOException(failure);
+  }
+
+  private Connection take() {
+    try {
+      while (true) {
+        Connection connection = idle.poll(1, TimeUnit.SECONDS);
+        if (connection != null) {
+          return connection;
+        }
+        if (alive.get() == 0) {
+          throw new IllegalStateException("No evaluation worker left");
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+
+  // the new connection, or null if the worker cannot be restarted
+  private Connection replace(Connection connection) {
+    connection.close();
+    connection.process.destroyForcibly();
+    Connection newConnection;
+    try {
+      newConnection = new Connection();
+    } catch (IOException e) {
+      L.severe(String.format("Cannot restart evaluation worker due to %s: %d workers left", e, alive.decrementAndGet()));
+      newConnection = null;
+    }
+    synchronized (connections) {
+      int index = connections.indexOf(connection);
+      if (newConnection == null) {
+        connections.remove(index);
+      } else {
+        connections.set(index, newConnection);
+      }
+    }
+    return newConnection;
+  }
+
+  @Override
+  public void close() {
+    synchronized (connections) {
+      connections.forEach(Connection::close);
+    }
+  }
+
+}
@@ -0,0 +1,139 @@
+package it.units.erallab.factors;
+
+import it.units.malelab.jgea.core.Individual;
+import it.units.malelab.jgea.core.evolver.stopcondition.Births;
+import it.units.malelab.jgea.core.order.PartialComparator;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CanonicalEvolutionaryStrategyTest {
+
+    private static final long SEED = 1L;
+    private static final int GENOTYPE_SIZE = 1000;
+    private static final int LARGE_GENOTYPE_SIZE = 50_000;
+    private static final int N_OF_GENERATIONS = 5;
+    private static final int POPULATION_SIZE = 40;
+    private static final int PARENTS_SIZE = POPULATION_SIZE / 4;
+    private static final double SIGMA = 0.35D;
+
+    @Test
+    public void weightsAreDecreasingAndSumToOne() {
+        double[] weights = CanonicalEvolutionaryStrategy.weights(PARENTS_SIZE);
+        assertEquals(PARENTS_SIZE, weights.length);
+        double sum = 0.0D;
+        for (int j = 0; j < weights.length; ++j) {
+            assertTrue(Double.isFinite(weights[j]) && weights[j] > 0.0D, String.format("Weight %d is %f", j, weights[j]));
+            if (j > 0) {
+                assertTrue(weights[j] < weights[j - 1], String.format("Weight %d is not below weight %d", j, j - 1));
+            }
+            sum = sum + weights[j];
+        }
+        assertEquals(1.0D, sum, 1e-12);
+    }
+
+    // the update on flat arrays against the update on boxed lists of the former implementation, on the same draws
+    @Test
+    public void meanUpdateMatchesListBasedUpdate() {
+        assertMeanUpdateMatchesListBasedUpdate(GENOTYPE_SIZE);
+    }
+
+    // large enough to be recombined in parallel, by blocks of dimensions
+    @Test
+    public void parallelMeanUpdateMatchesListBasedUpdate() {
+        assertMeanUpdateMatchesListBasedUpdate(LARGE_GENOTYPE_SIZE);
+    }
+
+    private static void assertMeanUpdateMatchesListBasedUpdate(int genotypeSize) {
+        Random random = new Random(SEED);
+        List<Double> listMean = random.doubles(genotypeSize, -1.0D, 1.0D).boxed().collect(Collectors.toList());
+        List<List<Double>> listNoise = IntStream.range(0, POPULATION_SIZE)
+                .mapToObj(i -> listMean.stream().map(v -> random.nextGaussian()).collect(Collectors.toList()))
+                .collect(Collectors.toList());
+        List<Integer> order = IntStream.range(0, POPULATION_SIZE).boxed().collect(Collectors.toList());
+        Collections.shuffle(order, random);
+        List<Integer> listParents = new ArrayList<>(order.subList(0, PARENTS_SIZE));
+        double[] weights = CanonicalEvolutionaryStrategy.weights(PARENTS_SIZE);
+        double[] mean = listMean.stream().mapToDouble(Double::doubleValue).toArray();
+        double[] noise = listNoise.stream().flatMap(List::stream).mapToDouble(Double::doubleValue).toArray();
+        int[] parents = listParents.stream().mapToInt(Integer::intValue).toArray();
+        double[] before = mean.clone();
+        // former update
+        for (int i = 0; i < listMean.size(); ++i) {
+            double update = 0.0;
+            for (int j = 0; j < PARENTS_SIZE; ++j) {
+                update += weights[j] * listNoise.get(listParents.get(j)).get(i);
+            }
+            listMean.set(i, listMean.get(i) + SIGMA * update);
+        }
+        CanonicalEvolutionaryStrategy.updateMean(mean, SIGMA, weights, noise, parents);
+        double moved = 0.0D;
+        for (int i = 0; i < genotypeSize; ++i) {
+            assertEquals(listMean.get(i), mean[i], 0.0D, String.format("Different mean at dimension %d", i));
+            moved = Math.max(moved, Math.abs(mean[i] - before[i]));
+        }
+        assertTrue(moved > 0.1D, String.format("The mean moved by at most %f", moved));
+    }
+
+    // the whole evolver, ranking and rows of the parents included, against a list-based run on the same draws: parents
+    // are the best offspring by their index in the generation, and the mean moves along their weighted perturbations
+    @Test
+    public void offspringMatchListBasedRun() throws Exception {
+        Function<List<Double>, Double> sphere = g -> g.stream().mapToDouble(v -> v * v).sum();
+        PartialComparator<Individual<List<Double>, List<Double>, Double>> comparator = PartialComparator.from(Double.class).comparing(Individual::getFitness);
+        List<Set<List<Double>>> actual = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            new CanonicalEvolutionaryStrategy<List<Double>, Double>(g -> g, new DoubleVectorFactory(GENOTYPE_SIZE, -1.0D, 1.0D), comparator, SIGMA, POPULATION_SIZE, PARENTS_SIZE).solve(
+                    sphere,
+                    new Births(POPULATION_SIZE * N_OF_GENERATIONS),
+                    new Random(SEED),
+                    executor,
+                    event -> actual.add(event.getOrderedPopulation().all().stream().map(i -> (List<Double>) new ArrayList<>(i.getGenotype())).collect(Collectors.toSet()))
+            );
+        } finally {
+            executor.shutdown();
+        }
+        // former implementation, without the shift of the indexes of the parents
+        Random random = new Random(SEED);
+        List<Double> mean = new ArrayList<>(new DoubleVectorFactory(GENOTYPE_SIZE, -1.0D, 1.0D).build(1, random).get(0));
+        double[] weights = CanonicalEvolutionaryStrategy.weights(PARENTS_SIZE);
+        List<List<Double>> noise = gaussians(random);
+        for (int g = 0; g < actual.size(); ++g) {
+            List<List<Double>> offspring = offspring(mean, noise);
+            assertEquals(new HashSet<>(offspring), actual.get(g), String.format("Different offspring at generation %d", g));
+            List<Integer> order = IntStream.range(0, POPULATION_SIZE).boxed()
+                    .sorted(Comparator.comparingDouble(i -> sphere.apply(offspring.get(i))))
+                    .collect(Collectors.toList());
+            for (int i = 0; i < mean.size(); ++i) {
+                double update = 0.0;
+                for (int j = 0; j < PARENTS_SIZE; ++j) {
+                    update += weights[j] * noise.get(order.get(j)).get(i);
+                }
+                mean.set(i, mean.get(i) + SIGMA * update);
+            }
+            noise = gaussians(random);
+        }
+        assertEquals(N_OF_GENERATIONS, actual.size());
+    }
+
+    private static List<List<Double>> gaussians(Random random) {
+        return IntStream.range(0, POPULATION_SIZE)
+                .mapToObj(i -> IntStream.range(0, GENOTYPE_SIZE).mapToObj(j -> random.nextGaussian()).collect(Collectors.toList()))
+                .collect(Collectors.toList());
+    }
+
+    private static List<List<Double>> offspring(List<Double> mean, List<List<Double>> noise) {
+        return noise.stream()
+                .map(row -> IntStream.range(0, mean.size()).mapToObj(j -> mean.get(j) + SIGMA * row.get(j)).collect(Collectors.toList()))
+                .collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,86 @@
+package it.units.erallab.factors;
+
+import it.units.malelab.jgea.core.listener.CSVPrinter;
+import it.units.malelab.jgea.core.listener.Listener;
+import it.units.malelab.jgea.core.listener.NamedFunction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static it.units.malelab.jgea.core.listener.NamedFunctions.f;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnarPrinterTest {
+
+    // more than two chunks, the last one partial
+    private static final int N_OF_ROWS = 2500;
+
+    // missing values in every column, a real Long.MIN_VALUE, formats padding and truncating, strings to be escaped
+    private static final List<NamedFunction<Integer, ?>> FUNCTIONS = List.of(
+            f("index", "%5d", i -> i),
+            f("value", "%6.3f", i -> (i % 7 == 0) ? null : Math.sin(i)),
+            f("long", "%d", i -> (i % 11 == 0) ? null : ((i % 13 == 0) ? Long.MIN_VALUE : (long) i * i)),
+            f("shape", "%5.5s", i -> (i % 5 == 0) ? null : "shape-" + (i % 3)),
+            f("flag", "%s", i -> i % 2 == 0),
+            f("text", "%s", i -> "a;b\"" + (i % 4))
+    );
+
+    private static void print(Listener.Factory<Integer> factory) {
+        Listener<Integer> listener = factory.build();
+        for (int i = 0; i < N_OF_ROWS; ++i) {
+            listener.listen(i);
+        }
+        listener.done();
+        factory.shutdown();
+    }
+
+    @Test
+    public void conversionMatchesCSVPrinter(@TempDir Path directory) throws IOException {
+        File csvFile = directory.resolve("expected.csv").toFile();
+        File columnarFile = directory.resolve("actual.bin").toFile();
+        File convertedFile = directory.resolve("actual.csv").toFile();
+        print(new CSVPrinter<>(FUNCTIONS, csvFile));
+        print(new ColumnarPrinter<>(FUNCTIONS, columnarFile));
+        try (ColumnarReader reader = new ColumnarReader(columnarFile); PrintStream out = new PrintStream(convertedFile)) {
+            reader.toCSV(out);
+        }
+        List<String> expected = Files.readAllLines(csvFile.toPath());
+        List<String> actual = Files.readAllLines(convertedFile.toPath());
+        assertEquals(N_OF_ROWS + 1, expected.size());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void missingValuesAreDistinguishedFromValues(@TempDir Path directory) throws IOException {
+        File columnarFile = directory.resolve("actual.bin").toFile();
+        print(new ColumnarPrinter<>(FUNCTIONS, columnarFile));
+        int r0 = 0;
+        try (ColumnarReader reader = new ColumnarReader(columnarFile)) {
+            for (ColumnarReader.Chunk chunk : reader) {
+                for (int r = 0; r < chunk.size(); ++r) {
+                    int i = r0 + r;
+                    for (int c = 0; c < FUNCTIONS.size(); ++c) {
+                        Object expected = FUNCTIONS.get(c).apply(i);
+                        assertEquals(expected == null, chunk.isMissing(c, r), String.format("Wrong missing flag of %s at row %d", FUNCTIONS.get(c).getName(), i));
+                    }
+                    assertEquals(Long.valueOf(i), chunk.get(0, r));
+                    if (i % 11 != 0 && i % 13 == 0) {
+                        assertEquals(Long.valueOf(Long.MIN_VALUE), chunk.get(2, r));
+                    }
+                    if (i % 7 != 0) {
+                        assertEquals(Math.sin(i), (double) chunk.get(1, r), 0.0D);
+                    }
+                }
+                r0 = r0 + chunk.size();
+            }
+        }
+        assertEquals(N_OF_ROWS, r0);
+    }
+
+}
@@ -0,0 +1,71 @@
+package it.units.erallab.factors;
+
+import it.units.erallab.hmsrobots.tasks.locomotion.Locomotion;
+import it.units.erallab.hmsrobots.tasks.locomotion.Outcome;
+import it.units.malelab.jgea.core.listener.NamedFunction;
+import org.dyn4j.dynamics.Settings;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactOutcomeTest {
+
+    private static final long SEED = 1L;
+    private static final double EPISODE_TIME = 10.0D;
+    private static final double SPECTRUM_MIN_FREQUENCY = 0.0D;
+    private static final double SPECTRUM_MAX_FREQUENCY = 10.0D;
+    private static final int SPECTRUM_SIZE = 100;
+
+    private static Outcome fullOutcome() {
+        RobotMapper mapper = RobotMapper.createMapper("gaussian-homogeneous", 5, 5, "vel-area-touch", new int[0], 1);
+        Random random = new Random(SEED);
+        List<Double> genotype = new ArrayList<>();
+        for (int i = 0; i < mapper.getGenotypeSize(); ++i) {
+            genotype.add(random.nextDouble() * 2.0D - 1.0D);
+        }
+        return new Locomotion(EPISODE_TIME, Locomotion.createTerrain("flat"), new Settings()).apply(mapper.apply(genotype));
+    }
+
+    private static List<NamedFunction<Outcome, ?>> outcomeFunctions() {
+        List<NamedFunction<Outcome, ?>> functions = new ArrayList<>(AuxUtils.basicOutcomeFunctions());
+        functions.addAll(AuxUtils.detailedOutcomeFunctions(SPECTRUM_MIN_FREQUENCY, SPECTRUM_MAX_FREQUENCY, SPECTRUM_SIZE));
+        return functions;
+    }
+
+    private static void assertSameValues(Outcome expected, Outcome actual, String description) {
+        for (NamedFunction<Outcome, ?> function : outcomeFunctions()) {
+            assertEquals(function.apply(expected), function.apply(actual), String.format("Different %s of the %s outcome", function.getName(), description));
+        }
+    }
+
+    // the listeners only call methods supported without the trajectory, else the compact outcome would throw
+    @Test
+    public void outcomeFunctionsMatchTheFullOutcome() throws IOException {
+        Outcome full = fullOutcome();
+        Outcome compact = CompactOutcome.of(full, SPECTRUM_MIN_FREQUENCY, SPECTRUM_MAX_FREQUENCY, SPECTRUM_SIZE);
+        assertSameValues(full, compact, "compact");
+        // as sent back by an evaluation worker
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ((CompactOutcome) compact).write(new DataOutputStream(bytes));
+        Outcome read = CompactOutcome.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertSameValues(full, read, "read");
+        CompactableOutcome compactable = new CompactableOutcome(full, SPECTRUM_MIN_FREQUENCY, SPECTRUM_MAX_FREQUENCY, SPECTRUM_SIZE);
+        assertSameValues(full, compactable, "not yet compacted");
+        assertTrue(compactable.compact());
+        assertSameValues(full, compactable, "compacted");
+    }
+
+    @Test
+    public void unsupportedValuesThrow() {
+        Outcome compact = CompactOutcome.of(fullOutcome(), SPECTRUM_MIN_FREQUENCY, SPECTRUM_MAX_FREQUENCY, SPECTRUM_SIZE);
+        assertThrows(UnsupportedOperationException.class, compact::getObservations);
+        assertThrows(UnsupportedOperationException.class, () -> compact.getCenterPowerSpectrum(Outcome.Component.X, SPECTRUM_MIN_FREQUENCY, SPECTRUM_MAX_FREQUENCY, SPECTRUM_SIZE / 2));
+        assertEquals(SPECTRUM_SIZE, compact.getCenterPowerSpectrum(Outcome.Component.X, 0, SPECTRUM_MAX_FREQUENCY, SPECTRUM_SIZE).size());
+    }
+
+}
@@ -0,0 +1,80 @@
+package it.units.erallab.factors;
+
+import it.units.erallab.hmsrobots.tasks.locomotion.Locomotion;
+import it.units.erallab.hmsrobots.tasks.locomotion.Outcome;
+import it.units.erallab.hmsrobots.util.Grid;
+import org.dyn4j.dynamics.Settings;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EarlyStoppingLocomotionTest {
+
+    private static final long SEED = 1L;
+    private static final double EPISODE_TIME = 5.0D;
+    private static final String TERRAIN = "flat";
+
+    private static List<Double> strengths(Outcome outcome, Outcome.Component component) {
+        return outcome.getCenterPowerSpectrum(component, 0.0D, 10.0D, 100).stream().map(Outcome.Mode::getStrength).collect(Collectors.toList());
+    }
+
+    private static List<Double> genotype(RobotMapper mapper) {
+        Random random = new Random(SEED);
+        List<Double> genotype = new ArrayList<>();
+        for (int i = 0; i < mapper.getGenotypeSize(); ++i) {
+            genotype.add(random.nextDouble() * 2.0D - 1.0D);
+        }
+        return genotype;
+    }
+
+    // never stops: no window is ever exceeded, and there is no reference distance
+    @Test
+    public void outcomeMatchesLocomotionWhenNeverStopped() {
+        RobotMapper mapper = RobotMapper.createMapper("gaussian-homogeneous", 5, 5, "vel-area-touch", new int[0], 1);
+        List<Double> genotype = genotype(mapper);
+        Settings settings = new Settings();
+        Outcome expected = new Locomotion(EPISODE_TIME, Locomotion.createTerrain(TERRAIN), settings).apply(mapper.apply(genotype));
+        EarlyStoppingLocomotion earlyStopping = new EarlyStoppingLocomotion(EPISODE_TIME, Locomotion.createTerrain(TERRAIN), settings, Double.POSITIVE_INFINITY, 1.0D, 0.0D);
+        Outcome actual = earlyStopping.apply(mapper.apply(genotype));
+        assertEquals(0L, earlyStopping.getStopped());
+        assertEquals(expected.getObservations().keySet(), actual.getObservations().keySet());
+        for (Double t : expected.getObservations().keySet()) {
+            assertEquals(expected.getObservations().get(t).getTerrainHeight(), actual.getObservations().get(t).getTerrainHeight(), 0.0D, String.format("Different terrain height at %.2f", t));
+        }
+        assertEquals(expected.getDistance(), actual.getDistance(), 0.0D);
+        assertEquals(expected.getVelocity(), actual.getVelocity(), 0.0D);
+        assertEquals(Grid.toString(expected.getAveragePosture(), (Predicate<Boolean>) b -> b, "|"), Grid.toString(actual.getAveragePosture(), (Predicate<Boolean>) b -> b, "|"));
+        for (Outcome.Component component : Outcome.Component.values()) {
+            assertEquals(strengths(expected, component), strengths(actual, component), String.format("Different %s spectrum", component));
+        }
+    }
+
+    // values depending only on the endpoints are the same, the others are estimates of the same size
+    @Test
+    public void streamingOutcomeMatchesLocomotionOnEndpoints() {
+        RobotMapper mapper = RobotMapper.createMapper("gaussian-homogeneous", 5, 5, "vel-area-touch", new int[0], 1);
+        List<Double> genotype = genotype(mapper);
+        Settings settings = new Settings();
+        Outcome expected = new Locomotion(EPISODE_TIME, Locomotion.createTerrain(TERRAIN), settings).apply(mapper.apply(genotype));
+        Outcome actual = new EarlyStoppingLocomotion(EPISODE_TIME, Locomotion.createTerrain(TERRAIN), settings, Double.POSITIVE_INFINITY, 1.0D, 0.0D, true, 0.0D, 10.0D, 100).apply(mapper.apply(genotype));
+        assertTrue(actual instanceof CompactOutcome);
+        assertEquals(expected.getDistance(), actual.getDistance(), 0.0D);
+        assertEquals(expected.getVelocity(), actual.getVelocity(), 0.0D);
+        assertEquals(expected.getAreaRatioPower(), actual.getAreaRatioPower(), 0.0D);
+        assertEquals(expected.getControlPower(), actual.getControlPower(), 0.0D);
+        assertEquals(expected.getCorrectedEfficiency(), actual.getCorrectedEfficiency(), 0.0D);
+        Grid<Boolean> posture = actual.getAveragePosture();
+        assertEquals(expected.getAveragePosture().getW(), posture.getW());
+        assertEquals(expected.getAveragePosture().getH(), posture.getH());
+        for (Outcome.Component component : Outcome.Component.values()) {
+            assertEquals(100, strengths(actual, component).size());
+        }
+    }
+
+}
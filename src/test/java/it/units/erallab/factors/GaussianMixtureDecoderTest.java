@@ -0,0 +1,61 @@
+package it.units.erallab.factors;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GaussianMixtureDecoderTest {
+
+    private static final long SEED = 1L;
+    private static final int N_OF_GENOTYPES = 10000;
+
+    // the per-cell formula of the former DoubleMapper.createFromGMM, cells row by row
+    private static boolean[] createFromGMM(double[] genotype, int width, int height) {
+        boolean[] occupancy = new boolean[width * height];
+        for (int c = 0; c < occupancy.length; ++c) {
+            double value = 0.0;
+            for (int i = 0; i < RobotMapper.NUM_GAUSSIANS; i++) {
+                double weight = genotype[5 * i];
+                double mx = genotype[1 + 5 * i];
+                double my = genotype[2 + 5 * i];
+                double sxx = genotype[3 + 5 * i];
+                double syy = genotype[4 + 5 * i];
+                double x = (double) (c % width) / (double) width;
+                double y = (double) (c / width) / (double) height;
+                value += weight * (Math.exp(-0.5 * (Math.pow((x - mx), 2.0) / Math.pow(sxx, 2.0) + Math.pow((y - my), 2.0) / Math.pow(syy, 2.0))) / (2 * Math.PI * sxx * syy));
+            }
+            occupancy[c] = value > RobotMapper.GAUSSIAN_THRESHOLD;
+        }
+        return occupancy;
+    }
+
+    @Test
+    public void decodingMatchesPerCellFormulaOnSquareGrid() {
+        assertDecodingMatchesPerCellFormula(5, 5);
+    }
+
+    @Test
+    public void decodingMatchesPerCellFormulaOnRectangularGrid() {
+        assertDecodingMatchesPerCellFormula(7, 4);
+    }
+
+    // one decoder for all the genotypes, as in a mapper, so that its buffers are reused
+    private static void assertDecodingMatchesPerCellFormula(int width, int height) {
+        Random random = new Random(SEED);
+        GaussianMixtureDecoder decoder = new GaussianMixtureDecoder(width, height, RobotMapper.NUM_GAUSSIANS, RobotMapper.GAUSSIAN_THRESHOLD);
+        int nOfOccupied = 0;
+        for (int g = 0; g < N_OF_GENOTYPES; ++g) {
+            double[] genotype = random.doubles(5 * RobotMapper.NUM_GAUSSIANS, -1.0D, 1.0D).toArray();
+            boolean[] expected = createFromGMM(genotype, width, height);
+            assertArrayEquals(expected, decoder.decode(genotype), String.format("Different occupancy for genotype %d", g));
+            for (boolean occupied : expected) {
+                nOfOccupied = nOfOccupied + (occupied ? 1 : 0);
+            }
+        }
+        // neither all empty nor all full, or the comparison would be vacuous
+        assertTrue(nOfOccupied > 0 && nOfOccupied < N_OF_GENOTYPES * width * height, String.format("%d occupied cells", nOfOccupied));
+    }
+
+}
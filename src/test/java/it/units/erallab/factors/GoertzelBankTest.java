@@ -0,0 +1,55 @@
+package it.units.erallab.factors;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GoertzelBankTest {
+
+    private static final long SEED = 1L;
+    private static final double SAMPLING_PERIOD = 1.0D / 60.0D;
+    private static final int N_OF_SAMPLES = 1800;
+    private static final int N_OF_BINS = 100;
+    private static final double MAX_FREQUENCY = 10.0D;
+
+    // the transform at the same frequencies computed directly on the whole mean-removed signal
+    @Test
+    public void strengthsMatchTheDirectTransform() {
+        Random random = new Random(SEED);
+        double[] signal = new double[N_OF_SAMPLES];
+        GoertzelBank bank = new GoertzelBank(SAMPLING_PERIOD, 0.0D, MAX_FREQUENCY, N_OF_BINS);
+        for (int k = 0; k < N_OF_SAMPLES; ++k) {
+            // a drifting position with a 2 Hz oscillation and some noise
+            signal[k] = 0.01D * k + Math.sin(2.0D * Math.PI * 2.0D * k * SAMPLING_PERIOD) + 0.1D * random.nextGaussian();
+            bank.add(signal[k]);
+        }
+        double mean = 0.0D;
+        for (double v : signal) {
+            mean = mean + v / N_OF_SAMPLES;
+        }
+        double[] frequencies = bank.getFrequencies();
+        double[] strengths = bank.strengths();
+        for (int b = 0; b < N_OF_BINS; ++b) {
+            double omega = 2.0D * Math.PI * frequencies[b] * SAMPLING_PERIOD;
+            double re = 0.0D;
+            double im = 0.0D;
+            for (int k = 0; k < N_OF_SAMPLES; ++k) {
+                re = re + (signal[k] - mean) * Math.cos(omega * k);
+                im = im - (signal[k] - mean) * Math.sin(omega * k);
+            }
+            double expected = Math.sqrt(re * re + im * im) / N_OF_SAMPLES;
+            assertEquals(expected, strengths[b], 1e-9, String.format("Different strength at %.2f Hz", frequencies[b]));
+        }
+    }
+
+    @Test
+    public void binsAreCenteredInTheRange() {
+        double[] frequencies = new GoertzelBank(SAMPLING_PERIOD, 0.0D, MAX_FREQUENCY, N_OF_BINS).getFrequencies();
+        assertEquals(N_OF_BINS, frequencies.length);
+        assertEquals(MAX_FREQUENCY / N_OF_BINS / 2.0D, frequencies[0], 1e-12);
+        assertEquals(MAX_FREQUENCY - MAX_FREQUENCY / N_OF_BINS / 2.0D, frequencies[N_OF_BINS - 1], 1e-12);
+    }
+
+}